@@ -0,0 +1,60 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.bench;
+
+/**
+ * A measured operation. The runner prepares it once per corpus, warms it up
+ * and then times every call of {@link #run()}.
+ */
+public abstract class Benchmark {
+	private final String name;
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns how many bytes of the corpus a call works on, the throughput
+	 * is given on them.
+	 */
+	public long getInputSize(Corpus corpus) {
+		return corpus.getSize();
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Does the work once. The result must depend on the whole work, the
+	 * runner keeps it so that the JIT cannot drop what is measured.
+	 */
+	public abstract long run() throws Exception;
+
+	/**
+	 * Prepares the benchmark for a corpus, not measured.
+	 */
+	public void setUp(Corpus corpus) throws Exception {
+		// Nothing to prepare by default
+	}
+
+	public void tearDown() throws Exception {
+		// Nothing to release by default
+	}
+}
@@ -0,0 +1,178 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.bench;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.polly.output.OutputIngestionBenchmark;
+import org.polly.search.SearchEngineBenchmark;
+import org.polly.ui.HighlightBenchmark;
+import org.polly.ui.SearchWindowBenchmark;
+
+/**
+ * Runs every benchmark on generated corpora and prints throughput, latency
+ * and allocation rate. Configured by system properties, see the bench
+ * target of the build file:
+ * <ul>
+ * <li>bench.sizes: corpus sizes in MB, comma separated</li>
+ * <li>bench.filter: runs only the benchmarks whose name contains it</li>
+ * <li>bench.warmup and bench.iterations: calls per benchmark and size</li>
+ * <li>bench.directory: where the corpora are generated and kept</li>
+ * <li>bench.out: CSV file the results are appended to, tagged with
+ * bench.label, to compare a release with the previous one</li>
+ * </ul>
+ */
+public class BenchmarkRunner {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final double MB = 1024 * 1024;
+
+	private static List<Benchmark> getBenchmarks() {
+		final List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		benchmarks.add(new SearchEngineBenchmark("search.literal", "ERROR", ""));
+		benchmarks.add(new SearchEngineBenchmark("search.ignoreCase", "connection 42", "-i"));
+		benchmarks.add(new SearchEngineBenchmark("search.regex", "took 1[0-9]{3} ms", "-E"));
+		benchmarks.add(new HighlightBenchmark("highlight.add", HighlightBenchmark.Mode.ADD));
+		benchmarks.add(new HighlightBenchmark("highlight.refresh", HighlightBenchmark.Mode.REFRESH));
+		benchmarks.add(new HighlightBenchmark("highlight.append", HighlightBenchmark.Mode.APPEND));
+		benchmarks.add(new SearchWindowBenchmark("searchWindow.lookup"));
+		benchmarks.add(new OutputIngestionBenchmark("ingest.stream", true));
+		benchmarks.add(new OutputIngestionBenchmark("ingest.memory", false));
+		return benchmarks;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final String[] sizes = System.getProperty("bench.sizes", "1,16,256").split(",");
+		final String filter = System.getProperty("bench.filter", "");
+		final int warmup = Integer.parseInt(System.getProperty("bench.warmup", "3").trim());
+		final int iterations = Integer.parseInt(System.getProperty("bench.iterations", "5").trim());
+		final File defaultDirectory = new File(System.getProperty("java.io.tmpdir"), "grepui-bench");
+		final File directory = new File(System.getProperty("bench.directory", defaultDirectory.getPath()));
+		final String out = System.getProperty("bench.out", "");
+		final String label = System.getProperty("bench.label", "current");
+
+		final BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations);
+		System.out.println(String.format("%-22s %8s %10s %10s %10s %10s %10s %12s", "benchmark", "MB", "MB/s",
+				"p50 ms", "p99 ms", "max ms", "alloc MB/s", "alloc MB/op"));
+		for (final String size : sizes) {
+			final Corpus corpus = Corpus.generate(directory, Long.parseLong(size.trim()) * 1024 * 1024);
+			for (final Benchmark benchmark : getBenchmarks()) {
+				if (!benchmark.getName().contains(filter)) {
+					continue;
+				}
+				final String result = runner.measure(benchmark, corpus);
+				System.out.println(result);
+				if (!out.isEmpty()) {
+					append(new File(out), label + "," + result.trim().replaceAll("\\s+", ","));
+				}
+			}
+		}
+		System.out.println("checksum " + runner.checksum);
+	}
+
+	private static void append(File file, String line) throws IOException {
+		final boolean isNew = !file.exists();
+		final PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, true), UTF8));
+		try {
+			if (isNew) {
+				writer.println("label,benchmark,mb,mb_per_s,p50_ms,p99_ms,max_ms,alloc_mb_per_s,alloc_mb_per_op");
+			}
+			writer.println(line);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private final int warmup;
+	private final int iterations;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	private long checksum = 0;
+
+	public BenchmarkRunner(int warmup, int iterations) {
+		this.warmup = warmup;
+		this.iterations = Math.max(1, iterations);
+	}
+
+	/**
+	 * Returns the bytes allocated so far by the live threads, or -1 when the
+	 * JVM cannot tell. The search engine allocates from its pool threads, so
+	 * all of them are counted.
+	 */
+	private long getAllocatedBytes() {
+		if (!(this.threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+
+		final long[] allocated = ((com.sun.management.ThreadMXBean) this.threads)
+				.getThreadAllocatedBytes(this.threads.getAllThreadIds());
+		long total = 0;
+		for (final long bytes : allocated) {
+			if (bytes > 0) {
+				total += bytes;
+			}
+		}
+		return total;
+	}
+
+	private String measure(Benchmark benchmark, Corpus corpus) throws Exception {
+		benchmark.setUp(corpus);
+		try {
+			for (int i = 0; i < this.warmup; i++) {
+				this.checksum += benchmark.run();
+			}
+
+			final long[] times = new long[this.iterations];
+			long totalTime = 0;
+			final long allocatedBefore = this.getAllocatedBytes();
+			for (int i = 0; i < this.iterations; i++) {
+				final long start = System.nanoTime();
+				this.checksum += benchmark.run();
+				times[i] = System.nanoTime() - start;
+				totalTime += times[i];
+			}
+			final long allocatedAfter = this.getAllocatedBytes();
+			Arrays.sort(times);
+
+			final double seconds = totalTime / 1e9;
+			final double size = benchmark.getInputSize(corpus) / MB;
+			String allocationRate = "n/a";
+			String allocationPerOperation = "n/a";
+			if (allocatedBefore >= 0 && allocatedAfter >= allocatedBefore) {
+				final double allocated = (allocatedAfter - allocatedBefore) / MB;
+				allocationRate = String.format("%.1f", allocated / seconds);
+				allocationPerOperation = String.format("%.2f", allocated / this.iterations);
+			}
+			return String.format("%-22s %8.0f %10.1f %10.2f %10.2f %10.2f %10s %12s", benchmark.getName(), size,
+					size * this.iterations / seconds, times[times.length / 2] / 1e6,
+					times[(int) Math.ceil(times.length * 0.99) - 1] / 1e6, times[times.length - 1] / 1e6,
+					allocationRate, allocationPerOperation);
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * A generated log file of a given size, with lines shaped like the ones of a
+ * real application: timestamp, level, thread, logger and message. The same
+ * size always gives the same content, the file is kept and reused by the
+ * next runs.
+ */
+public class Corpus {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String[] LEVELS = { "INFO", "INFO", "INFO", "INFO", "DEBUG", "DEBUG", "DEBUG", "WARN",
+			"INFO", "DEBUG" };
+	private static final String[] LOGGERS = { "org.polly.service.Dispatcher", "org.polly.service.Session",
+			"org.polly.store.Repository", "org.polly.net.Connection", "org.polly.auth.TokenValidator" };
+	private static final String[] MESSAGES = { "request id=%d user=u%d took %d ms",
+			"session %d opened for user=u%d in %d ms", "cache miss for key %d, loaded %d rows in %d ms",
+			"connection %d to node%d reset after %d ms", "token %d of user=u%d expires in %d s" };
+
+	public static Corpus generate(File directory, long size) throws IOException {
+		final File file = new File(directory, "corpus-" + size + ".log");
+		if (file.length() >= size) {
+			return new Corpus(file);
+		}
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create " + directory);
+		}
+		final Random random = new Random(size);
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF8), 1 << 20);
+		try {
+			long written = 0;
+			long time = 1488326400000L;
+			final StringBuilder line = new StringBuilder(160);
+			while (written < size) {
+				time += random.nextInt(50);
+				line.setLength(0);
+				line.append(String.format("%tF %<tT.%<tL ", time));
+				// About one line in a hundred is an error
+				line.append(random.nextInt(100) == 0 ? "ERROR" : LEVELS[random.nextInt(LEVELS.length)]);
+				line.append(" [worker-").append(random.nextInt(16)).append("] ");
+				line.append(LOGGERS[random.nextInt(LOGGERS.length)]).append(" - ");
+				line.append(String.format(MESSAGES[random.nextInt(MESSAGES.length)], random.nextInt(1000000),
+						random.nextInt(500), random.nextInt(2000)));
+				line.append('\n');
+				writer.write(line.toString());
+				written += line.length();
+			}
+		} finally {
+			writer.close();
+		}
+		return new Corpus(file);
+	}
+
+	private final File file;
+
+	private Corpus(File file) {
+		this.file = file;
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	public long getSize() {
+		return this.file.length();
+	}
+
+	/**
+	 * Returns the first complete lines of the corpus up to the given number
+	 * of bytes, for the benchmarks of what works on the text shown.
+	 */
+	public String readText(int maxBytes) throws IOException {
+		final byte[] bytes = new byte[(int) Math.min(maxBytes, this.getSize())];
+		final InputStream input = new FileInputStream(this.file);
+		try {
+			int read = 0;
+			while (read < bytes.length) {
+				final int count = input.read(bytes, read, bytes.length - read);
+				if (count < 0) {
+					break;
+				}
+				read += count;
+			}
+		} finally {
+			input.close();
+		}
+
+		int end = bytes.length;
+		while (end > 0 && bytes[end - 1] != '\n') {
+			end--;
+		}
+		return new String(bytes, 0, end, UTF8);
+	}
+}
@@ -0,0 +1,120 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.output;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.polly.bench.Benchmark;
+import org.polly.bench.Corpus;
+
+/**
+ * Takes the corpus in as the output of a search. Streamed, it goes through
+ * the {@link OutputStreamer} and the {@link FileLineIndex} as the output of a
+ * command; otherwise it is appended by batches to a {@link MemoryLineStore}
+ * as the matches of the internal engine.
+ */
+public class OutputIngestionBenchmark extends Benchmark {
+	private static final int BATCH_SIZE = 1000;
+	private static final long MEMORY_BUDGET = 64 * 1024 * 1024;
+
+	private final boolean isStreamed;
+	private Corpus corpus = null;
+	private File outputFile = null;
+
+	public OutputIngestionBenchmark(String name, boolean isStreamed) {
+		super(name);
+		this.isStreamed = isStreamed;
+	}
+
+	@Override
+	public long run() throws Exception {
+		return this.isStreamed ? this.runStreamed() : this.runInMemory();
+	}
+
+	private long runInMemory() throws IOException {
+		final MemoryLineStore store = new MemoryLineStore(MEMORY_BUDGET);
+		final BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(this.corpus.getFile()), "UTF-8"));
+		try {
+			List<String> batch = new ArrayList<String>(BATCH_SIZE);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				batch.add(line);
+				if (batch.size() == BATCH_SIZE) {
+					store.append(batch);
+					batch = new ArrayList<String>(BATCH_SIZE);
+				}
+			}
+			store.append(batch);
+			return store.getLineCount();
+		} finally {
+			reader.close();
+			store.close();
+		}
+	}
+
+	private long runStreamed() throws IOException {
+		final FileLineIndex index = new FileLineIndex(this.outputFile.getPath());
+		final InputStream input = new FileInputStream(this.corpus.getFile());
+		final OutputStream copy = new FileOutputStream(this.outputFile);
+		// The streamer closes both streams once the input is over
+		new OutputStreamer(input, copy, new LineSink() {
+			@Override
+			public void append(List<String> lines) {
+				try {
+					index.refresh();
+				} catch (final IOException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+
+			@Override
+			public void close() {
+				// The index is finished once the copy is closed
+			}
+		}, BATCH_SIZE, 100).run();
+
+		index.finish();
+		final long lineCount = index.getLineCount();
+		index.close();
+		return lineCount;
+	}
+
+	@Override
+	public void setUp(Corpus corpus) throws Exception {
+		this.corpus = corpus;
+		this.outputFile = File.createTempFile("grepui-bench", ".out");
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		if (this.outputFile != null && !this.outputFile.delete()) {
+			this.outputFile.deleteOnExit();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.polly.bench.Benchmark;
+import org.polly.bench.Corpus;
+import org.polly.output.LineSink;
+
+/**
+ * Searches the whole corpus with the internal {@link ParallelSearchEngine},
+ * as the internal engine of a tab does.
+ */
+public class SearchEngineBenchmark extends Benchmark {
+	private final SearchQuery query;
+	private Corpus corpus = null;
+
+	public SearchEngineBenchmark(String name, String pattern, String grepOptions) {
+		super(name);
+		this.query = SearchQuery.parse(pattern, grepOptions);
+	}
+
+	@Override
+	public long run() throws Exception {
+		final long[] count = new long[1];
+		new ParallelSearchEngine(Collections.singletonList(this.corpus.getFile()), this.query, new LineSink() {
+			@Override
+			public void append(List<String> lines) {
+				count[0] += lines.size();
+			}
+
+			@Override
+			public void close() {
+				// Nothing to release
+			}
+		}).run();
+		return count[0];
+	}
+
+	@Override
+	public void setUp(Corpus corpus) throws Exception {
+		this.corpus = corpus;
+	}
+}
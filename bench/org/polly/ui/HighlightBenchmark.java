@@ -0,0 +1,115 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.awt.Color;
+
+import javax.swing.JTextArea;
+import javax.swing.text.Document;
+
+import org.polly.bench.Benchmark;
+import org.polly.bench.Corpus;
+
+/**
+ * Highlights words in a text area holding the first megabytes of the
+ * corpus. The text shown is a page of the output, so the document is capped
+ * whatever the corpus size.
+ */
+public class HighlightBenchmark extends Benchmark {
+	public enum Mode {
+		/** A word added by the user, the whole document is scanned again */
+		ADD,
+		/** Every highlight of the document computed from scratch */
+		REFRESH,
+		/** A page of lines appended and then removed, as a streamed output */
+		APPEND
+	}
+
+	private static final int MAX_DOCUMENT_SIZE = 8 * 1024 * 1024;
+	private static final String[] WORDS = { "ERROR", "user=u42", "org.polly.net.Connection" };
+
+	private final Mode mode;
+	private HighlightEngine engine = null;
+	private Highlighter highlighter = null;
+	private Document document = null;
+	private String page = null;
+
+	public HighlightBenchmark(String name, Mode mode) {
+		super(name);
+		this.mode = mode;
+	}
+
+	@Override
+	public long getInputSize(Corpus corpus) {
+		if (this.mode == Mode.APPEND) {
+			return this.page.length();
+		}
+		return Math.min(corpus.getSize(), MAX_DOCUMENT_SIZE);
+	}
+
+	@Override
+	public long run() throws Exception {
+		switch (this.mode) {
+		case ADD:
+			for (final String word : WORDS) {
+				this.highlighter.add(word);
+			}
+			this.highlighter.clear();
+			break;
+		case REFRESH:
+			this.engine.wordsChanged();
+			break;
+		case APPEND:
+			final int length = this.document.getLength();
+			this.document.insertString(length, this.page, null);
+			this.document.remove(length, this.page.length());
+			break;
+		}
+		return this.document.getLength();
+	}
+
+	@Override
+	public void setUp(Corpus corpus) throws Exception {
+		final String text = corpus.readText(MAX_DOCUMENT_SIZE);
+		final JTextArea textArea = new JTextArea(text);
+		this.document = textArea.getDocument();
+		this.engine = new HighlightEngine(textArea);
+		this.highlighter = new Highlighter(this.engine, Color.YELLOW);
+		if (this.mode != Mode.ADD) {
+			for (final String word : WORDS) {
+				this.highlighter.add(word);
+			}
+		}
+
+		// A page of the default size of the result view
+		int end = 0;
+		for (int i = 0; i < 5000 && end >= 0; i++) {
+			end = text.indexOf('\n', end + 1);
+		}
+		this.page = end < 0 ? text : text.substring(0, end + 1);
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		this.engine = null;
+		this.highlighter = null;
+		this.document = null;
+		this.page = null;
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+
+import org.polly.bench.Benchmark;
+import org.polly.bench.Corpus;
+import org.polly.search.SearchQuery;
+
+/**
+ * Goes from match to match in the index of a search of the
+ * {@link SearchWindow}, what happens every time Enter is pressed in the
+ * dialog once the index is built.
+ */
+public class SearchWindowBenchmark extends Benchmark {
+	private static final int MAX_DOCUMENT_SIZE = 64 * 1024 * 1024;
+	private static final int LOOKUPS = 1000000;
+
+	private int[] matchStarts = null;
+	private int[] positions = null;
+	private int documentLength = 0;
+
+	public SearchWindowBenchmark(String name) {
+		super(name);
+	}
+
+	@Override
+	public long getInputSize(Corpus corpus) {
+		return Math.min(corpus.getSize(), MAX_DOCUMENT_SIZE);
+	}
+
+	@Override
+	public long run() throws Exception {
+		long sum = 0;
+		for (final int position : this.positions) {
+			sum += SearchWindow.lowerBound(this.matchStarts, position);
+		}
+		return sum;
+	}
+
+	@Override
+	public void setUp(Corpus corpus) throws Exception {
+		final String text = corpus.readText(MAX_DOCUMENT_SIZE);
+		this.documentLength = text.length();
+
+		int[] starts = new int[1024];
+		int count = 0;
+		final Matcher matcher = new SearchQuery("user=u42", false, false, false, true).getPattern().matcher(text);
+		while (matcher.find()) {
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, count * 2);
+			}
+			starts[count++] = matcher.start();
+		}
+		this.matchStarts = Arrays.copyOf(starts, count);
+
+		// Caret positions all over the document, as a user jumping around
+		final Random random = new Random(42);
+		this.positions = new int[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++) {
+			this.positions[i] = random.nextInt(Math.max(1, this.documentLength));
+		}
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		this.matchStarts = null;
+		this.positions = null;
+	}
+}
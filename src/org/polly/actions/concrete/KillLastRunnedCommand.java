@@ -19,16 +19,17 @@
 package org.polly.actions.concrete;
 
 import org.polly.actions.Action;
-import org.polly.actions.aggregated.RunExternalProgramAggregatedAction;
 
 public class KillLastRunnedCommand implements Action {
-	public KillLastRunnedCommand() {
 
+	private final RunCommand runCommand;
+
+	public KillLastRunnedCommand(RunCommand runCommand) {
+		this.runCommand = runCommand;
 	}
 
 	@Override
 	public void execute() {
-		final RunExternalProgramAggregatedAction runner = RunExternalProgramAggregatedAction.getInstance();
-		runner.kill();
+		this.runCommand.kill();
 	}
 }
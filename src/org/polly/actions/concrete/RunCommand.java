@@ -18,48 +18,150 @@
  */
 package org.polly.actions.concrete;
 
-import java.awt.event.ActionEvent;
-import java.awt.event.ActionListener;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.LineNumberReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.swing.JTextArea;
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
 import org.polly.actions.Action;
 import org.polly.actions.aggregated.RunExternalProgramAggregatedAction;
+import org.polly.index.TrigramIndex;
+import org.polly.jobs.FollowJob;
+import org.polly.jobs.IndexJob;
+import org.polly.jobs.Job;
+import org.polly.jobs.JobListener;
+import org.polly.jobs.ProcessJob;
+import org.polly.jobs.SearchJob;
+import org.polly.output.ResultCache;
 import org.polly.persistency.Option;
+import org.polly.search.FileGlob;
+import org.polly.search.SearchQuery;
+import org.polly.search.TimeWindow;
+import org.polly.structured.LayoutLineParser;
+import org.polly.structured.LogLineParser;
+import org.polly.ui.ResultView;
 
 public class RunCommand implements Action {
+	public static final String pattern = "pattern";
+	public static final String filename = "filename";
+	public static final String additionalOption = "additionalOption";
 	public static final String command = "command";
+	public static final String engine = "engine";
+	public static final String commandEngine = "command";
+	public static final String internalEngine = "internal";
 	public static final String homePath = "home";
 	public static final String outFilename = "outFilename";
 	public static final String maxFileLineToRead = "maxFileLineToRead";
+	public static final String streamOutput = "streamOutput";
+	public static final String streamBatchSize = "streamBatchSize";
+	public static final String streamFlushInterval = "streamFlushInterval";
+	public static final String maxConcurrentJobs = "maxConcurrentJobs";
+	public static final String memoryBudget = "memoryBudget";
+	public static final String resultCacheSize = "resultCacheSize";
+	public static final String incrementalSearch = "incrementalSearch";
+	public static final String followCapacity = "followCapacity";
+	public static final String indexDirectories = "indexDirectories";
+	public static final String lineParser = "lineParser";
+	public static final String layoutLineParser = "layout";
+	public static final String lineLayout = "lineLayout";
+	public static final String timestampFormat = "timestampFormat";
+	public static final String timeFrom = "timeFrom";
+	public static final String timeTo = "timeTo";
+	public static final String mergeByTime = "mergeByTime";
 	private static final String variableRegEx = "\\$\\{(.*?)\\}";
 	private static final Pattern p = Pattern.compile(variableRegEx);
+	private static final int progressInterval = 250;
+	// The tabs whose job is alive, their progress is polled a few times a
+	// second by one timer thread, the search threads only update their
+	// counters and the event dispatch thread only sets the texts
+	private static final Set<RunCommand> progressCommands = new CopyOnWriteArraySet<RunCommand>();
+	private static final Timer progressTimer = new Timer("GrepUI progress", true);
 
-	private final JTextArea output;
+	static {
+		progressTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				RunCommand.updateProgress();
+			}
+		}, progressInterval, progressInterval);
+	}
+
+	private static String getProgressText(Job job) {
+		if (job == null) {
+			return "";
+		}
+		if (job.getState() == Job.State.FAILED && job.getFailure() != null) {
+			return "Failed: " + job.getFailure();
+		}
+		return job.getProgressText();
+	}
+
+	private static void updateProgress() {
+		final Map<RunCommand, Job> jobs = new HashMap<RunCommand, Job>();
+		final Map<RunCommand, String> texts = new HashMap<RunCommand, String>();
+		for (final RunCommand command : progressCommands) {
+			final Job job = command.shownJob;
+			if (job == null || !job.isAlive()) {
+				// The end is shown by the state change
+				progressCommands.remove(command);
+				continue;
+			}
+			jobs.put(command, job);
+			texts.put(command, getProgressText(job));
+		}
+		if (texts.isEmpty()) {
+			return;
+		}
+
+		SwingUtilities.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				for (final Entry<RunCommand, String> text : texts.entrySet()) {
+					final RunCommand command = text.getKey();
+					if (command.shownJob == jobs.get(command)) {
+						command.output.setProgress(text.getValue());
+					}
+				}
+			}
+		});
+	}
+
+	private final ResultView output;
 	private final Collection<Option> options;
-	private final StringBuilder sb = new StringBuilder();
+	private volatile Job shownJob = null;
 
-	public RunCommand(JTextArea output, Collection<Option> options) {
+	public RunCommand(ResultView output, Collection<Option> options) {
 		this.output = output;
 		this.options = options;
 	}
 
+	/**
+	 * Kills the job run by this command, if still alive, and releases its
+	 * output.
+	 */
+	public void close() {
+		progressCommands.remove(this);
+		if (this.shownJob != null) {
+			this.shownJob.kill();
+			this.shownJob.releaseOutput();
+			this.shownJob = null;
+		}
+	}
+
 	@Override
 	public void execute() {
 		try {
@@ -67,6 +169,20 @@ public class RunCommand implements Action {
 			outputPath += outputPath.endsWith(File.separator) ? "" : File.separator;
 			outputPath += this.getOption(outFilename).getLastValue();
 
+			final String pageSize = this.getOption(RunCommand.maxFileLineToRead).getLastValue();
+			this.output.setPageSize(Integer.valueOf(pageSize.trim()));
+
+			final String maxJobs = this.getOption(RunCommand.maxConcurrentJobs).getLastValue();
+			RunExternalProgramAggregatedAction.getInstance().setMaxConcurrentJobs(Integer.valueOf(maxJobs.trim()));
+
+			// grep reads the files end to end and one after the other, only
+			// the internal engine can seek to the time window or merge files
+			if (RunCommand.internalEngine.equals(this.getOption(RunCommand.engine).getLastValue().trim())
+					|| this.getTimeWindow() != null || this.isMergedByTime()) {
+				this.runInternal();
+				return;
+			}
+
 			String localCommand = this.getOption(command).getLastValue();
 			final Matcher m = p.matcher(localCommand);
 
@@ -85,20 +201,73 @@ public class RunCommand implements Action {
 				localCommand = localCommand.replace(entry.getKey(), entry.getValue());
 			}
 
-			this.output.setText(localCommand);
-
 			final List<String> vsArrays = new ArrayList<String>();
 			vsArrays.add("/bin/sh");
 			vsArrays.add("-c");
 			vsArrays.add(localCommand);
 
-			this.runAndFork(outputPath, localCommand, vsArrays);
+			final boolean isStreamed = Boolean.parseBoolean(this.getOption(streamOutput).getLastValue().trim());
+			final int batchSize = Integer.valueOf(this.getOption(RunCommand.streamBatchSize).getLastValue().trim());
+			final long flushInterval = Long
+					.valueOf(this.getOption(RunCommand.streamFlushInterval).getLastValue().trim());
+			final ProcessJob job = new ProcessJob(localCommand, vsArrays, outputPath, isStreamed, batchSize,
+					flushInterval);
+
+			final long cacheSize = Long.valueOf(this.getOption(RunCommand.resultCacheSize).getLastValue().trim())
+					* 1024 * 1024;
+			final List<File> inputs = FileGlob.expand(this.getOption(RunCommand.filename).getLastValue());
+			if (cacheSize > 0 && !inputs.isEmpty()) {
+				final File cacheDirectory = new File(this.getOption(homePath).getLastValue(), ".grepui-cache");
+				job.setCache(new ResultCache(cacheDirectory, cacheSize), inputs);
+			}
+
+			this.run(job);
+
+		} catch (final Throwable e) {
+			this.printExceptionToOutput(e);
+		}
+	}
+
+	/**
+	 * Follows the files of the filename option, the lines appended to them
+	 * that match the pattern are shown until the job is killed.
+	 */
+	public void follow() {
+		try {
+			final String pageSize = this.getOption(RunCommand.maxFileLineToRead).getLastValue();
+			this.output.setPageSize(Integer.valueOf(pageSize.trim()));
+
+			final String filenames = this.getOption(RunCommand.filename).getLastValue();
+			final SearchQuery query = SearchQuery.parse(this.getOption(RunCommand.pattern).getLastValue(),
+					this.getOption(RunCommand.additionalOption).getLastValue());
+			final int capacity = Integer.valueOf(this.getOption(RunCommand.followCapacity).getLastValue().trim());
 
+			this.run(new FollowJob("follow " + query.getText() + " in " + filenames, filenames, query, capacity));
+			this.output.setFollowingTail(true);
 		} catch (final Throwable e) {
 			this.printExceptionToOutput(e);
 		}
 	}
 
+	/**
+	 * Returns the index of the configured directories, or null when no
+	 * directory is indexed.
+	 */
+	private TrigramIndex getIndex() {
+		final List<File> roots = new ArrayList<File>();
+		final String directories = this.getOption(RunCommand.indexDirectories).getLastValue();
+		for (final String directory : directories.trim().split("\\s+")) {
+			if (!directory.isEmpty()) {
+				roots.add(new File(directory));
+			}
+		}
+
+		if (roots.isEmpty()) {
+			return null;
+		}
+		return new TrigramIndex(new File(this.getOption(homePath).getLastValue(), ".grepui-index"), roots);
+	}
+
 	private Option getOption(String key) {
 		for (final Option option : this.options) {
 			if (option.getKey().equals(key)) {
@@ -109,65 +278,158 @@ public class RunCommand implements Action {
 		return null;
 	}
 
+	/**
+	 * Returns the time window of the options, or null when both bounds are
+	 * empty.
+	 */
+	private TimeWindow getTimeWindow() {
+		final String from = this.getOption(RunCommand.timeFrom).getLastValue();
+		final String to = this.getOption(RunCommand.timeTo).getLastValue();
+		if (from.trim().isEmpty() && to.trim().isEmpty()) {
+			return null;
+		}
+		return TimeWindow.parse(from, to, this.getOption(RunCommand.timestampFormat).getLastValue());
+	}
+
+	private boolean isMergedByTime() {
+		return Boolean.parseBoolean(this.getOption(RunCommand.mergeByTime).getLastValue().trim())
+				&& FileGlob.expand(this.getOption(RunCommand.filename).getLastValue()).size() > 1;
+	}
+
+	/**
+	 * Kills the job run by this command, the jobs of the other tabs keep
+	 * going.
+	 */
+	public void kill() {
+		if (this.shownJob != null) {
+			this.shownJob.kill();
+		}
+	}
+
+	/**
+	 * Returns the parser of the structured lines chosen by the options: the
+	 * layout parser or a class implementing {@link LogLineParser} with a
+	 * public no argument constructor.
+	 */
+	public LogLineParser newLineParser() throws ReflectiveOperationException {
+		final String parser = this.getOption(RunCommand.lineParser).getLastValue().trim();
+		if (RunCommand.layoutLineParser.equals(parser)) {
+			return new LayoutLineParser(this.getOption(RunCommand.lineLayout).getLastValue(),
+					this.getOption(RunCommand.timestampFormat).getLastValue());
+		}
+		return Class.forName(parser).asSubclass(LogLineParser.class).getDeclaredConstructor().newInstance();
+	}
+
 	private void printExceptionToOutput(final Throwable e) {
 		final StringWriter sw = new StringWriter();
 		final PrintWriter pw = new PrintWriter(sw);
 		e.printStackTrace(pw);
-		this.output.setText(sw.toString());
+		this.output.setMessage(sw.toString());
 	}
 
-	private void runAndFork(String outputPath, String localCommand, final List<String> vsArrays) throws Exception {
+	/**
+	 * Shows the job and runs it. The view follows the job through its
+	 * listener, the output is refreshed when the job publishes new lines and
+	 * the title when the job state changes, on completion as well.
+	 */
+	private void run(final Job job) {
+		this.show(job);
+		job.addListener(new JobListener() {
+			@Override
+			public void outputChanged(Job job) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (RunCommand.this.shownJob == job) {
+							RunCommand.this.output.refresh();
+						}
+					}
+				});
+			}
+
+			@Override
+			public void stateChanged(Job job) {
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						if (RunCommand.this.shownJob == job) {
+							RunCommand.this.output.setTitle(job.toString());
+							RunCommand.this.showProgress();
+						}
+					}
+				});
+			}
+		});
+
 		final RunExternalProgramAggregatedAction runner = RunExternalProgramAggregatedAction.getInstance();
-		final boolean isRunning = runner.run(vsArrays, outputPath);
-		if (!isRunning) {
-			this.output.setText(
-					"There is something wrong, probably you have already run something, please you it is stuck kill it");
+		runner.run(job);
+		this.showProgress();
+		progressCommands.add(this);
+	}
+
+	private void runInternal() {
+		final String filenames = this.getOption(RunCommand.filename).getLastValue();
+		final List<File> files = FileGlob.expand(filenames);
+		if (files.isEmpty()) {
+			this.output.setMessage("No file matches " + filenames);
 			return;
 		}
 
-		final Timer t = new Timer(1000, new ActionListener() {
-			@Override
-			public void actionPerformed(ActionEvent event) {
-				LineNumberReader reader = null;
-				try {
-					if (runner.isAlive()) {
-						// skip this time, retry later
-						return;
-					}
+		final SearchQuery query = SearchQuery.parse(this.getOption(RunCommand.pattern).getLastValue(),
+				this.getOption(RunCommand.additionalOption).getLastValue());
 
-					reader = new LineNumberReader(new InputStreamReader(new FileInputStream(outputPath), "UTF-8"));
+		final long budget = Long.valueOf(this.getOption(RunCommand.memoryBudget).getLastValue().trim()) * 1024 * 1024;
+		final TimeWindow timeWindow = this.getTimeWindow();
+		String description = "internal search of " + query.getText() + " in " + files.size() + " file(s)";
+		final boolean isMerged = this.isMergedByTime();
+		if (timeWindow != null) {
+			description += " " + timeWindow;
+		}
+		if (isMerged) {
+			description += " merged by time";
+		}
+		File checkpointDirectory = null;
+		// The checkpoints hold the matches of the whole files, file by file
+		if (timeWindow == null && !isMerged
+				&& Boolean.parseBoolean(this.getOption(RunCommand.incrementalSearch).getLastValue().trim())) {
+			checkpointDirectory = new File(this.getOption(homePath).getLastValue(), ".grepui-checkpoints");
+		}
+		final SearchJob job = new SearchJob(description, files, query, budget, checkpointDirectory);
+		job.setIndex(this.getIndex());
+		job.setTimeWindow(timeWindow);
+		if (isMerged) {
+			job.setTimeOrderedMerge(this.getOption(RunCommand.timestampFormat).getLastValue());
+		}
+		this.run(job);
+	}
 
-					final int maxFileLineToRead = Integer
-							.valueOf(RunCommand.this.getOption(RunCommand.maxFileLineToRead).getLastValue());
+	private void show(Job job) {
+		if (this.shownJob != null && this.shownJob != job) {
+			// Nobody could look at the replaced job or stop it anymore, it
+			// would only hold a slot of the scheduler
+			this.shownJob.kill();
+			this.shownJob.releaseOutput();
+		}
 
-					// Clean the builder instead of allocate a new one
-					RunCommand.this.sb.setLength(0);
-					RunCommand.this.sb.append("Executed command: ");
-					RunCommand.this.sb.append(localCommand).append(" ");
-					RunCommand.this.sb.append(localCommand).append("\n");
-					RunCommand.this.sb.append("--\n\n");
-					String line;
-					while ((line = reader.readLine()) != null && reader.getLineNumber() <= maxFileLineToRead) {
-						RunCommand.this.sb.append(line).append("\n");
-					}
-					RunCommand.this.output.setText(RunCommand.this.sb.toString());
-
-				} catch (final Exception e) {
-					RunCommand.this.printExceptionToOutput(e);
-				} finally {
-					if (reader != null) {
-						try {
-							reader.close();
-						} catch (final IOException e) {
-							RunCommand.this.printExceptionToOutput(e);
-						}
-					}
-				}
+		this.shownJob = job;
+		this.output.setStore(job.getOutput(), job.toString());
+	}
 
-				((Timer) event.getSource()).stop();
-			}
-		});
-		t.setRepeats(true);
-		t.start();
+	private void showProgress() {
+		this.output.setProgress(getProgressText(this.shownJob));
+	}
+
+	/**
+	 * Builds or extends the index of the configured directories.
+	 */
+	public void updateIndex() {
+		final TrigramIndex index = this.getIndex();
+		if (index == null) {
+			this.output.setMessage("No directory to index, set the indexed directories option first");
+			return;
+		}
+
+		final String directories = this.getOption(RunCommand.indexDirectories).getLastValue().trim();
+		this.run(new IndexJob("update index of " + directories, index));
 	}
 }
@@ -0,0 +1,57 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.actions.concrete;
+
+import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import org.polly.actions.Action;
+import org.polly.output.LineStore;
+import org.polly.ui.LogTableWindow;
+import org.polly.ui.ResultView;
+
+public class ShowLogTable implements Action {
+
+	private final ResultView resultView;
+	private final RunCommand runCommand;
+
+	public ShowLogTable(ResultView resultView, RunCommand runCommand) {
+		this.resultView = resultView;
+		this.runCommand = runCommand;
+	}
+
+	@Override
+	public void execute() {
+		final LineStore store = this.resultView.getStore();
+		if (store == null) {
+			return;
+		}
+
+		try {
+			// A new table every time, the lines of the tab may have changed
+			new LogTableWindow((JFrame) SwingUtilities.getAncestorOfClass(JFrame.class, this.resultView), store,
+					this.runCommand.newLineParser()).setVisible(true);
+		} catch (final Exception e) {
+			JOptionPane.showMessageDialog(this.resultView, "Cannot parse the lines: " + e, "Table",
+					JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
+}
@@ -0,0 +1,265 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * The trigram index of a single log file, as stored on disk: the file is
+ * split in blocks aligned to line boundaries and every trigram found in the
+ * file has the sorted list of blocks containing it. Only the header is kept
+ * in memory, the postings of a trigram are read when needed.
+ */
+class FileIndex {
+	private static final int MAGIC = 0x47555458;
+	private static final int VERSION = 1;
+
+	private static int[] intersect(int[] a, int[] b) {
+		final int[] result = new int[Math.min(a.length, b.length)];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[count++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Reads the header of an index file, or returns null when the file is
+	 * missing or not an index.
+	 */
+	static FileIndex read(File indexFile) throws IOException {
+		if (!indexFile.isFile()) {
+			return null;
+		}
+
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return null;
+			}
+
+			final String path = in.readUTF();
+			final String inode = in.readUTF();
+			final long indexedLength = in.readLong();
+
+			final long[] blockStarts = new long[in.readInt() + 1];
+			for (int i = 0; i < blockStarts.length; i++) {
+				blockStarts[i] = in.readLong();
+			}
+
+			final int[] codes = new int[in.readInt()];
+			for (int i = 0; i < codes.length; i++) {
+				codes[i] = in.readInt();
+			}
+			final long[] postingStarts = new long[codes.length + 1];
+			for (int i = 0; i < postingStarts.length; i++) {
+				postingStarts[i] = in.readLong();
+			}
+
+			final long postingsOffset = indexFile.length() - 4 * postingStarts[codes.length];
+			return new FileIndex(indexFile, path, inode, indexedLength, blockStarts, codes, postingStarts,
+					postingsOffset);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes a whole index, through a temporary file so a reader never sees
+	 * half of it.
+	 */
+	static void write(File indexFile, String path, String inode, long indexedLength, long[] blockStarts,
+			int[] codes, int[][] postings) throws IOException {
+		final File temp = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+		try {
+			final DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temp), 1024 * 1024));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(path);
+				out.writeUTF(inode);
+				out.writeLong(indexedLength);
+
+				out.writeInt(blockStarts.length - 1);
+				for (final long blockStart : blockStarts) {
+					out.writeLong(blockStart);
+				}
+
+				out.writeInt(codes.length);
+				for (final int code : codes) {
+					out.writeInt(code);
+				}
+				long postingStart = 0;
+				for (final int[] blocks : postings) {
+					out.writeLong(postingStart);
+					postingStart += blocks.length;
+				}
+				out.writeLong(postingStart);
+
+				for (final int[] blocks : postings) {
+					for (final int block : blocks) {
+						out.writeInt(block);
+					}
+				}
+			} finally {
+				out.close();
+			}
+
+			Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+	}
+
+	private final File indexFile;
+	private final String path;
+	private final String inode;
+	private final long indexedLength;
+	private final long[] blockStarts;
+	private final int[] codes;
+	private final long[] postingStarts;
+	private final long postingsOffset;
+
+	private FileIndex(File indexFile, String path, String inode, long indexedLength, long[] blockStarts,
+			int[] codes, long[] postingStarts, long postingsOffset) {
+		this.indexFile = indexFile;
+		this.path = path;
+		this.inode = inode;
+		this.indexedLength = indexedLength;
+		this.blockStarts = blockStarts;
+		this.codes = codes;
+		this.postingStarts = postingStarts;
+		this.postingsOffset = postingsOffset;
+	}
+
+	private int[] findPostings(FileChannel channel, int trigram) throws IOException {
+		final int index = Arrays.binarySearch(this.codes, trigram);
+		if (index < 0) {
+			return new int[0];
+		}
+		return this.readPostings(channel, index);
+	}
+
+	long[] getBlockStarts() {
+		return this.blockStarts;
+	}
+
+	/**
+	 * Returns the sorted blocks that contain every one of the trigrams.
+	 */
+	int[] getCandidateBlocks(int[] trigrams) throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(this.indexFile, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			int[] candidates = null;
+			for (final int trigram : trigrams) {
+				final int[] blocks = this.findPostings(channel, trigram);
+				candidates = candidates == null ? blocks : intersect(candidates, blocks);
+				if (candidates.length == 0) {
+					break;
+				}
+			}
+			return candidates;
+		} finally {
+			file.close();
+		}
+	}
+
+	int getCode(int index) {
+		return this.codes[index];
+	}
+
+	int getCodeCount() {
+		return this.codes.length;
+	}
+
+	long getIndexedLength() {
+		return this.indexedLength;
+	}
+
+	String getInode() {
+		return this.inode;
+	}
+
+	String getPath() {
+		return this.path;
+	}
+
+	/**
+	 * Reads every posting list, to extend the index as the file grows.
+	 */
+	int[][] readAllPostings() throws IOException {
+		final RandomAccessFile file = new RandomAccessFile(this.indexFile, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			final int[][] postings = new int[this.codes.length][];
+			for (int i = 0; i < this.codes.length; i++) {
+				postings[i] = this.readPostings(channel, i);
+			}
+			return postings;
+		} finally {
+			file.close();
+		}
+	}
+
+	private int[] readPostings(FileChannel channel, int index) throws IOException {
+		final int count = (int) (this.postingStarts[index + 1] - this.postingStarts[index]);
+		final ByteBuffer bytes = ByteBuffer.allocate(count * 4);
+		long position = this.postingsOffset + 4 * this.postingStarts[index];
+		while (bytes.hasRemaining()) {
+			final int read = channel.read(bytes, position);
+			if (read < 0) {
+				throw new IOException("Truncated index " + this.indexFile);
+			}
+			position += read;
+		}
+		bytes.flip();
+
+		final IntBuffer ints = bytes.asIntBuffer();
+		final int[] blocks = new int[count];
+		ints.get(blocks);
+		return blocks;
+	}
+}
@@ -0,0 +1,380 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.polly.output.ResultCache;
+import org.polly.search.CompressedInput;
+import org.polly.search.SearchQuery;
+
+/**
+ * Trigram index of the log files below a set of directories. Every file is
+ * split in blocks of about {@link #BLOCK_SIZE} bytes aligned to line
+ * boundaries, and for every trigram (three consecutive bytes, ASCII letters
+ * folded to lower case) the index keeps the blocks where it appears. A search
+ * only has to read the blocks containing all the trigrams of the literals
+ * its pattern requires.
+ *
+ * Log files are expected to only grow: the index of a file is extended with
+ * the new lines, and built again when the file is rotated or truncated. The
+ * part of a file appended after the last update is always searched.
+ */
+public class TrigramIndex {
+	private static class IntList {
+		private int[] values = new int[8];
+		private int size = 0;
+
+		IntList() {
+		}
+
+		IntList(int[] values) {
+			this.values = values.length == 0 ? new int[8] : values;
+			this.size = values.length;
+		}
+
+		void add(int value) {
+			if (this.size == this.values.length) {
+				this.values = Arrays.copyOf(this.values, this.size * 2);
+			}
+			this.values[this.size++] = value;
+		}
+
+		void clear() {
+			this.size = 0;
+		}
+
+		int get(int index) {
+			return this.values[index];
+		}
+
+		int size() {
+			return this.size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(this.values, this.size);
+		}
+	}
+
+	private static final int BLOCK_SIZE = 4 * 1024 * 1024;
+	private static final int BUFFER_SIZE = 1024 * 1024;
+	// Index files of the same log must not be written by two jobs at once
+	private static final Object updateLock = new Object();
+
+	/**
+	 * Returns the sorted trigrams that every line matching the query contains,
+	 * an empty array when the index cannot help the query.
+	 */
+	public static int[] getTrigrams(SearchQuery query) {
+		final TreeSet<Integer> trigrams = new TreeSet<Integer>();
+		for (final String literal : query.getRequiredLiterals()) {
+			final byte[] bytes = literal.getBytes(StandardCharsets.UTF_8);
+			for (int i = 0; i + 3 <= bytes.length; i++) {
+				if (isUsable(bytes[i], query) && isUsable(bytes[i + 1], query) && isUsable(bytes[i + 2], query)) {
+					trigrams.add((lower(bytes[i]) << 16) | (lower(bytes[i + 1]) << 8) | lower(bytes[i + 2]));
+				}
+			}
+		}
+
+		final int[] result = new int[trigrams.size()];
+		int i = 0;
+		for (final Integer trigram : trigrams) {
+			result[i++] = trigram;
+		}
+		return result;
+	}
+
+	private static boolean isUsable(byte b, SearchQuery query) {
+		if (b == '\n') {
+			return false;
+		}
+		if (!query.isIgnoreCase()) {
+			return true;
+		}
+
+		// Ignoring the case, non ASCII letters match in many byte forms and
+		// i, k and s match some of them too (the Kelvin sign, the long s, the
+		// dotted I)
+		final int c = lower(b);
+		return c < 0x80 && c != 'i' && c != 'k' && c != 's';
+	}
+
+	private static int lower(int b) {
+		final int c = b & 0xFF;
+		return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+	}
+
+	private final File directory;
+	private final List<File> roots;
+
+	public TrigramIndex(File directory, List<File> roots) {
+		this.directory = directory;
+		this.roots = roots;
+	}
+
+	private void closeBlock(int block, IntList touched, long[] seen, Map<Integer, IntList> postings) {
+		for (int i = 0; i < touched.size(); i++) {
+			final int code = touched.get(i);
+			seen[code >>> 6] &= ~(1L << code);
+
+			IntList blocks = postings.get(code);
+			if (blocks == null) {
+				blocks = new IntList();
+				postings.put(code, blocks);
+			}
+			blocks.add(block);
+		}
+		touched.clear();
+	}
+
+	/**
+	 * Returns true when the file is below one of the indexed directories.
+	 */
+	public boolean contains(File file) {
+		final Path path = file.getAbsoluteFile().toPath().normalize();
+		for (final File root : this.roots) {
+			if (path.startsWith(root.getAbsoluteFile().toPath().normalize())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the byte ranges of the file that may contain lines with all the
+	 * trigrams, including the part not indexed yet, or null when the file
+	 * has no usable index and has to be searched as a whole.
+	 */
+	public List<long[]> getCandidateRanges(File file, int[] trigrams, long size) throws IOException {
+		if (trigrams.length == 0 || !this.contains(file)) {
+			return null;
+		}
+
+		final FileIndex index = FileIndex.read(this.getIndexFile(file));
+		if (index == null || !this.isValid(index, file) || size < index.getIndexedLength()) {
+			return null;
+		}
+
+		final long[] blockStarts = index.getBlockStarts();
+		final List<long[]> ranges = new ArrayList<long[]>();
+		for (final int block : index.getCandidateBlocks(trigrams)) {
+			final long start = blockStarts[block];
+			final long end = blockStarts[block + 1];
+			final long[] last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+			if (last != null && last[1] == start) {
+				last[1] = end;
+			} else {
+				ranges.add(new long[] { start, end });
+			}
+		}
+
+		if (size > index.getIndexedLength()) {
+			ranges.add(new long[] { index.getIndexedLength(), size });
+		}
+		return ranges;
+	}
+
+	private File getIndexFile(File file) throws IOException {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			final byte[] hash = digest.digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+			return new File(this.directory, ResultCache.toHex(hash) + ".idx");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private boolean isValid(FileIndex index, File file) throws IOException {
+		final Path path = file.toPath();
+		final String inode = String.valueOf(ResultCache.getInode(path,
+				Files.readAttributes(path, BasicFileAttributes.class)));
+		return index.getPath().equals(file.getAbsolutePath()) && index.getInode().equals(inode);
+	}
+
+	/**
+	 * Returns the files below the indexed directories, in path order.
+	 */
+	public List<File> listFiles() throws IOException {
+		final List<File> files = new ArrayList<File>();
+		for (final File root : this.roots) {
+			if (!root.isDirectory()) {
+				continue;
+			}
+
+			Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					// Compressed logs are decompressed and read whole
+					if (attrs.isRegularFile() && !CompressedInput.isCompressed(file.toFile())) {
+						files.add(file.toFile());
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException exc) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+
+		Collections.sort(files);
+		return files;
+	}
+
+	/**
+	 * Reads the file from the given offset, closing a block at the first line
+	 * end after every {@link #BLOCK_SIZE} bytes and at the last complete line.
+	 */
+	private void scan(File file, long from, Map<Integer, IntList> postings, List<Long> blockStarts)
+			throws IOException {
+		// Trigrams already seen in the current block
+		final long[] seen = new long[(1 << 24) / 64];
+		final IntList touched = new IntList();
+
+		final RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = input.getChannel();
+			final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			final byte[] bytes = buffer.array();
+			long position = from;
+			long blockStart = from;
+			long lastLineEnd = from;
+			int code = 0;
+			int window = 0;
+			int read;
+			while ((read = channel.read(buffer, position)) > 0) {
+				for (int i = 0; i < read; i++) {
+					final int b = bytes[i] & 0xFF;
+					if (b == '\n') {
+						window = 0;
+						lastLineEnd = position + i + 1;
+						if (lastLineEnd - blockStart >= BLOCK_SIZE) {
+							this.closeBlock(blockStarts.size() - 1, touched, seen, postings);
+							blockStarts.add(lastLineEnd);
+							blockStart = lastLineEnd;
+						}
+						continue;
+					}
+
+					code = ((code << 8) | lower(b)) & 0xFFFFFF;
+					if (++window >= 3 && (seen[code >>> 6] & (1L << code)) == 0) {
+						seen[code >>> 6] |= 1L << code;
+						touched.add(code);
+					}
+				}
+				position += read;
+				buffer.clear();
+			}
+
+			// The last partial line is left to the next update
+			if (lastLineEnd > blockStart) {
+				this.closeBlock(blockStarts.size() - 1, touched, seen, postings);
+				blockStarts.add(lastLineEnd);
+			}
+		} finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Builds the index of the file or extends it with the lines appended
+	 * since the last update. Returns false when the index was up to date.
+	 */
+	public boolean update(File file) throws IOException {
+		synchronized (updateLock) {
+			final Path path = file.toPath();
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			final String inode = String.valueOf(ResultCache.getInode(path, attributes));
+			final File indexFile = this.getIndexFile(file);
+			final FileIndex old = FileIndex.read(indexFile);
+
+			final Map<Integer, IntList> postings = new HashMap<Integer, IntList>();
+			final List<Long> blockStarts = new ArrayList<Long>();
+			long from = 0;
+			if (old != null && old.getPath().equals(file.getAbsolutePath()) && old.getInode().equals(inode)
+					&& attributes.size() >= old.getIndexedLength()) {
+				if (attributes.size() == old.getIndexedLength()) {
+					return false;
+				}
+
+				from = old.getIndexedLength();
+				final int[][] oldPostings = old.readAllPostings();
+				for (int i = 0; i < oldPostings.length; i++) {
+					postings.put(old.getCode(i), new IntList(oldPostings[i]));
+				}
+				for (final long blockStart : old.getBlockStarts()) {
+					blockStarts.add(blockStart);
+				}
+			} else {
+				blockStarts.add(0L);
+			}
+
+			final int oldBlockCount = blockStarts.size();
+			this.scan(file, from, postings, blockStarts);
+			if (old != null && blockStarts.size() == oldBlockCount && from > 0) {
+				// No new complete line
+				return false;
+			}
+
+			if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+				throw new IOException("Unable to create " + this.directory);
+			}
+
+			final int[] codes = new int[postings.size()];
+			int i = 0;
+			for (final Integer code : postings.keySet()) {
+				codes[i++] = code;
+			}
+			Arrays.sort(codes);
+			final int[][] codePostings = new int[codes.length][];
+			for (i = 0; i < codes.length; i++) {
+				codePostings[i] = postings.get(codes[i]).toArray();
+			}
+
+			final long[] starts = new long[blockStarts.size()];
+			for (i = 0; i < starts.length; i++) {
+				starts[i] = blockStarts.get(i);
+			}
+			FileIndex.write(indexFile, file.getAbsolutePath(), inode, starts[starts.length - 1], starts, codes,
+					codePostings);
+			return true;
+		}
+	}
+}
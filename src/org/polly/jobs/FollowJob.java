@@ -0,0 +1,291 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.jobs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.polly.output.LineStore;
+import org.polly.output.ResultCache;
+import org.polly.output.RingLineStore;
+import org.polly.search.CompressedInput;
+import org.polly.search.FileGlob;
+import org.polly.search.SearchQuery;
+
+/**
+ * Follows the files matching a glob like tail -f piped into grep: the lines
+ * appended to the files are read as soon as the file system reports a change,
+ * the matching ones are kept in a {@link RingLineStore}. Files created later
+ * that match the glob are followed from their beginning, rotated or truncated
+ * files are read again from the start. The job runs until it is killed.
+ */
+public class FollowJob extends Job {
+	private static class FollowedFile {
+		private final File file;
+		private Object inode = null;
+		private long position = 0;
+		private FileChannel channel = null;
+		private IOException failure = null;
+		private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+
+		FollowedFile(File file) {
+			this.file = file;
+		}
+
+		void close() {
+			if (this.channel != null) {
+				try {
+					this.channel.close();
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+				this.channel = null;
+			}
+		}
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int BATCH_SIZE = 1000;
+	// The watch service misses events on some file systems, look anyway
+	private static final long POLL_INTERVAL = 1000;
+
+	private final String filenames;
+	private final SearchQuery query;
+	private final RingLineStore output;
+	private final Map<File, FollowedFile> followed = new LinkedHashMap<File, FollowedFile>();
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private volatile WatchService watcher = null;
+	private volatile String failures = "";
+
+	public FollowJob(String description, String filenames, SearchQuery query, int capacity) {
+		super(description);
+		this.filenames = filenames;
+		this.query = query;
+		this.output = new RingLineStore(capacity);
+	}
+
+	@Override
+	protected void execute() throws Exception {
+		final WatchService watcher = FileSystems.getDefault().newWatchService();
+		this.watcher = watcher;
+		try {
+			if (this.isKilled()) {
+				return;
+			}
+
+			// Existing files are followed from their current end
+			final Set<Path> directories = new HashSet<Path>();
+			for (final File file : this.expand()) {
+				final FollowedFile followedFile = new FollowedFile(file);
+				this.open(followedFile);
+				followedFile.position = followedFile.channel.size();
+				this.followed.put(file, followedFile);
+			}
+			this.watchDirectories(watcher, directories);
+
+			final Matcher matcher = this.query.newMatcher();
+			while (!this.isKilled()) {
+				final WatchKey key = watcher.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					key.pollEvents();
+					key.reset();
+				}
+
+				for (final File file : this.expand()) {
+					if (!this.followed.containsKey(file)) {
+						this.followed.put(file, new FollowedFile(file));
+					}
+				}
+				this.watchDirectories(watcher, directories);
+
+				final List<String> lines = new ArrayList<String>();
+				final boolean isPrefixed = this.followed.size() > 1;
+				for (final FollowedFile followedFile : this.followed.values()) {
+					this.read(followedFile, matcher, isPrefixed ? followedFile.file.getPath() + ":" : "", lines);
+				}
+				this.flush(lines);
+
+				final StringBuilder failures = new StringBuilder();
+				for (final FollowedFile followedFile : this.followed.values()) {
+					if (followedFile.failure != null) {
+						failures.append(", unable to read ").append(followedFile.file.getPath()).append(": ")
+								.append(followedFile.failure);
+					}
+				}
+				this.failures = failures.toString();
+			}
+		} catch (final ClosedWatchServiceException e) {
+			// Closed by kill
+		} finally {
+			for (final FollowedFile followedFile : this.followed.values()) {
+				followedFile.close();
+			}
+			watcher.close();
+		}
+	}
+
+	/**
+	 * Returns the files of the glob that can grow, rotated logs compressed
+	 * by logrotate are left out.
+	 */
+	private List<File> expand() {
+		final List<File> files = new ArrayList<File>();
+		for (final File file : FileGlob.expand(this.filenames)) {
+			if (!CompressedInput.isCompressed(file)) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+
+	private void flush(List<String> lines) {
+		if (!lines.isEmpty()) {
+			this.output.append(lines);
+			lines.clear();
+			this.fireOutputChanged();
+		}
+	}
+
+	@Override
+	public LineStore getOutput() {
+		return this.output;
+	}
+
+	/**
+	 * Adds the files that cannot be read at the moment, they are tried again
+	 * at every change.
+	 */
+	@Override
+	public String getProgressText() {
+		final String failures = this.failures;
+		return failures.isEmpty() ? super.getProgressText() : super.getProgressText() + failures;
+	}
+
+	@Override
+	public boolean isEndless() {
+		return true;
+	}
+
+	@Override
+	protected void onKill() {
+		final WatchService watcher = this.watcher;
+		if (watcher != null) {
+			try {
+				// Wakes up the job waiting for changes
+				watcher.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Opens the file from its beginning.
+	 */
+	private void open(FollowedFile followedFile) throws IOException {
+		followedFile.close();
+		followedFile.channel = new RandomAccessFile(followedFile.file, "r").getChannel();
+		followedFile.inode = ResultCache.getInode(followedFile.file.toPath(),
+				Files.readAttributes(followedFile.file.toPath(), BasicFileAttributes.class));
+		followedFile.position = 0;
+		followedFile.partialLine.reset();
+	}
+
+	/**
+	 * Reads what was appended to the file since the last time, only complete
+	 * lines are matched, the last partial one waits for its end.
+	 */
+	private void read(FollowedFile followedFile, Matcher matcher, String prefix, List<String> lines) {
+		followedFile.failure = null;
+		try {
+			final Path path = followedFile.file.toPath();
+			if (!followedFile.file.isFile()) {
+				// Removed by the rotation, wait for the new one
+				followedFile.close();
+				return;
+			}
+
+			final Object inode = ResultCache.getInode(path, Files.readAttributes(path, BasicFileAttributes.class));
+			if (followedFile.channel == null || !inode.equals(followedFile.inode)
+					|| followedFile.channel.size() < followedFile.position) {
+				this.open(followedFile);
+			}
+
+			int read;
+			this.buffer.clear();
+			while ((read = followedFile.channel.read(this.buffer, followedFile.position)) > 0) {
+				followedFile.position += read;
+				final byte[] bytes = this.buffer.array();
+				int lineStart = 0;
+				for (int i = 0; i < read; i++) {
+					if (bytes[i] != '\n') {
+						continue;
+					}
+
+					followedFile.partialLine.write(bytes, lineStart, i - lineStart);
+					final String line = new String(followedFile.partialLine.toByteArray(), StandardCharsets.UTF_8);
+					followedFile.partialLine.reset();
+					if (this.query.matches(matcher, line)) {
+						lines.add(prefix + line);
+						if (lines.size() >= BATCH_SIZE) {
+							this.flush(lines);
+						}
+					}
+					lineStart = i + 1;
+				}
+				followedFile.partialLine.write(bytes, lineStart, read - lineStart);
+				this.buffer.clear();
+			}
+		} catch (final IOException e) {
+			// The file may be in the middle of a rotation, try again later
+			followedFile.failure = e;
+		}
+	}
+
+	private void watchDirectories(WatchService watcher, Set<Path> directories) throws IOException {
+		for (final File file : this.followed.keySet()) {
+			final Path directory = file.getAbsoluteFile().toPath().getParent();
+			if (directory != null && directories.add(directory)) {
+				directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+			}
+		}
+	}
+}
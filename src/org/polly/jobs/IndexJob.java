@@ -0,0 +1,80 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.jobs;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.polly.index.TrigramIndex;
+import org.polly.output.LineStore;
+import org.polly.output.MemoryLineStore;
+
+/**
+ * Builds or extends the {@link TrigramIndex} of every file below the indexed
+ * directories, the output lists the files whose index changed.
+ */
+public class IndexJob extends Job {
+	private final TrigramIndex index;
+	private final MemoryLineStore output = new MemoryLineStore();
+
+	public IndexJob(String description, TrigramIndex index) {
+		super(description);
+		this.index = index;
+	}
+
+	private void append(String line) {
+		this.output.append(Collections.singletonList(line));
+		this.fireOutputChanged();
+	}
+
+	@Override
+	protected void execute() throws Exception {
+		final List<File> files = this.index.listFiles();
+		int updated = 0;
+		for (final File file : files) {
+			if (this.isKilled()) {
+				break;
+			}
+
+			try {
+				final long start = System.currentTimeMillis();
+				if (this.index.update(file)) {
+					updated++;
+					this.append("Indexed " + file.getPath() + " (" + file.length() / (1024 * 1024) + " MB) in "
+							+ (System.currentTimeMillis() - start) + " ms");
+				}
+			} catch (final Exception e) {
+				this.append("Unable to index " + file.getPath() + ": " + e);
+			}
+		}
+
+		this.append(updated + " of " + files.size() + " file(s) indexed, the others were up to date");
+	}
+
+	@Override
+	public LineStore getOutput() {
+		return this.output;
+	}
+
+	@Override
+	protected void onKill() {
+		// Checked between two files
+	}
+}
@@ -0,0 +1,209 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.jobs;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.polly.output.LineStore;
+import org.polly.search.SearchProgress;
+
+/**
+ * A search run by the {@link JobScheduler}. Every job has its own id, its own
+ * output and goes through QUEUED, RUNNING and then one of DONE, FAILED or
+ * KILLED.
+ */
+public abstract class Job implements Runnable {
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED, KILLED
+	}
+
+	private static final AtomicInteger lastId = new AtomicInteger();
+
+	private final int id;
+	private final String description;
+	private final List<JobListener> listeners = new CopyOnWriteArrayList<JobListener>();
+	private volatile State state = State.QUEUED;
+	private volatile boolean isKilled = false;
+	private volatile boolean isOutputReleased = false;
+	private Throwable failure = null;
+	private volatile long startTime = 0;
+	private volatile long endTime = 0;
+
+	protected Job(String description) {
+		this.id = lastId.incrementAndGet();
+		this.description = description;
+	}
+
+	public void addListener(JobListener listener) {
+		this.listeners.add(listener);
+	}
+
+	protected abstract void execute() throws Exception;
+
+	protected void fireOutputChanged() {
+		for (final JobListener listener : this.listeners) {
+			listener.outputChanged(this);
+		}
+	}
+
+	public String getDescription() {
+		return this.description;
+	}
+
+	public Throwable getFailure() {
+		return this.failure;
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	public abstract LineStore getOutput();
+
+	/**
+	 * Returns the counters of the bytes searched so far, or null when the job
+	 * cannot tell how far it is.
+	 */
+	public SearchProgress getProgress() {
+		return null;
+	}
+
+	/**
+	 * Describes how far the job is: bytes searched, throughput, matches and
+	 * remaining time when known, otherwise the lines found and the elapsed
+	 * time.
+	 */
+	public String getProgressText() {
+		if (this.startTime == 0) {
+			return this.state == State.QUEUED ? "Waiting" : "";
+		}
+
+		final long end = this.endTime == 0 ? System.nanoTime() : this.endTime;
+		final double seconds = Math.max(end - this.startTime, 1) / 1e9;
+		final SearchProgress progress = this.getProgress();
+		if (progress == null) {
+			return String.format("%d lines, %.1f s", this.getOutput().getLineCount(), seconds);
+		}
+
+		final long scanned = progress.getScannedBytes();
+		final long total = Math.max(progress.getTotalBytes(), scanned);
+		final double bytesPerSecond = scanned / seconds;
+		final StringBuilder text = new StringBuilder();
+		text.append(String.format("%.1f of %.1f MB", scanned / 1048576.0, total / 1048576.0));
+		if (total > 0) {
+			text.append(String.format(" (%d%%)", scanned * 100 / total));
+		}
+		text.append(String.format(", %.1f MB/s, %d matches", bytesPerSecond / 1048576.0, progress.getMatchCount()));
+		if (this.endTime == 0 && bytesPerSecond > 0) {
+			final long remaining = (long) ((total - scanned) / bytesPerSecond);
+			text.append(String.format(", ETA %d:%02d", remaining / 60, remaining % 60));
+		} else if (this.endTime != 0) {
+			text.append(String.format(", %.1f s", seconds));
+		}
+		return text.toString();
+	}
+
+	public State getState() {
+		return this.state;
+	}
+
+	public boolean isAlive() {
+		return this.state == State.QUEUED || this.state == State.RUNNING;
+	}
+
+	/**
+	 * Returns true for a job that runs until it is killed, the scheduler
+	 * does not give it one of its slots.
+	 */
+	public boolean isEndless() {
+		return false;
+	}
+
+	public boolean isKilled() {
+		return this.isKilled;
+	}
+
+	public synchronized void kill() {
+		if (!this.isAlive()) {
+			return;
+		}
+
+		this.isKilled = true;
+		if (this.state == State.QUEUED) {
+			this.setState(State.KILLED);
+		} else {
+			this.onKill();
+		}
+	}
+
+	protected abstract void onKill();
+
+	/**
+	 * The output is not needed anymore: it is closed now or as soon as the
+	 * job ends.
+	 */
+	public synchronized void releaseOutput() {
+		this.isOutputReleased = true;
+		if (!this.isAlive()) {
+			this.getOutput().close();
+		}
+	}
+
+	@Override
+	public final void run() {
+		synchronized (this) {
+			if (this.state != State.QUEUED) {
+				return;
+			}
+			this.startTime = System.nanoTime();
+			this.setState(State.RUNNING);
+		}
+
+		State endState;
+		try {
+			this.execute();
+			endState = this.isKilled ? State.KILLED : State.DONE;
+		} catch (final Throwable e) {
+			this.failure = e;
+			endState = this.isKilled ? State.KILLED : State.FAILED;
+		}
+
+		synchronized (this) {
+			this.endTime = System.nanoTime();
+			this.setState(endState);
+			if (this.isOutputReleased) {
+				this.getOutput().close();
+			}
+		}
+	}
+
+	private void setState(State state) {
+		this.state = state;
+		for (final JobListener listener : this.listeners) {
+			listener.stateChanged(this);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Job #" + this.id + " " + this.description + " [" + this.state.name().toLowerCase() + "]";
+	}
+}
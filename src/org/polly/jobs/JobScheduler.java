@@ -0,0 +1,72 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.jobs;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the submitted jobs, at most a given number at once, the others wait
+ * in a queue in submission order. Endless jobs run on their own thread. Nothing is kept of a job once it
+ * ended, the tab showing it holds its output.
+ */
+public class JobScheduler {
+	private final ThreadPoolExecutor executor;
+
+	public JobScheduler(int maxConcurrentJobs) {
+		final int size = Math.max(1, maxConcurrentJobs);
+		this.executor = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private int count = 0;
+
+					@Override
+					public synchronized Thread newThread(Runnable r) {
+						final Thread thread = new Thread(r, "GrepUI job runner " + ++this.count);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		this.executor.allowCoreThreadTimeOut(true);
+	}
+
+	public synchronized void setMaxConcurrentJobs(int maxConcurrentJobs) {
+		final int size = Math.max(1, maxConcurrentJobs);
+		if (size > this.executor.getMaximumPoolSize()) {
+			this.executor.setMaximumPoolSize(size);
+			this.executor.setCorePoolSize(size);
+		} else {
+			this.executor.setCorePoolSize(size);
+			this.executor.setMaximumPoolSize(size);
+		}
+	}
+
+	public synchronized void submit(Job job) {
+		if (job.isEndless()) {
+			// It would hold a slot for good, the jobs queued after it
+			// would never run
+			final Thread thread = new Thread(job, "GrepUI job " + job.getId());
+			thread.setDaemon(true);
+			thread.start();
+			return;
+		}
+		this.executor.execute(job);
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.jobs;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import org.polly.output.FileLineIndex;
+import org.polly.output.LineStore;
+import org.polly.output.OutputStreamer;
+import org.polly.output.ResultCache;
+
+/**
+ * Runs an external command writing its output into a file owned by the job.
+ * When streamed, the output is read through a pipe and indexed while the
+ * command is running, otherwise it is indexed once the command is over.
+ */
+public class ProcessJob extends Job {
+	private static String getOutputPath(String outputBasePath, int id) {
+		// grepui.out becomes grepui-<id>.out
+		final File base = new File(outputBasePath);
+		final String name = base.getName();
+		final int dot = name.lastIndexOf('.');
+		final String jobName = dot > 0 ? name.substring(0, dot) + "-" + id + name.substring(dot)
+				: name + "-" + id;
+		return new File(base.getParentFile(), jobName).getPath();
+	}
+
+	private final List<String> vsArrays;
+	private final String outputPath;
+	private final FileLineIndex output;
+	private final boolean isStreamed;
+	private final int batchSize;
+	private final long flushInterval;
+	private volatile Process process = null;
+	private ResultCache cache = null;
+	private List<File> inputs = null;
+
+	public ProcessJob(String description, List<String> vsArrays, String outputBasePath, boolean isStreamed,
+			int batchSize, long flushInterval) {
+		super(description);
+		this.vsArrays = vsArrays;
+		this.outputPath = getOutputPath(outputBasePath, this.getId());
+		this.output = new FileLineIndex(this.outputPath);
+		this.isStreamed = isStreamed;
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+	}
+
+	@Override
+	protected void execute() throws Exception {
+		// The output file of an earlier run may be linked to a cache entry,
+		// never write through it
+		final File outputFile = new File(this.outputPath);
+		Files.deleteIfExists(outputFile.toPath());
+
+		final String cacheKey = this.cache == null ? null : this.cache.getKey(this.getDescription(), this.inputs);
+		final File cached = cacheKey == null ? null : this.cache.lookup(cacheKey);
+		if (cached != null) {
+			try {
+				Files.createLink(outputFile.toPath(), cached.toPath());
+			} catch (final IOException | UnsupportedOperationException e) {
+				Files.copy(cached.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} else {
+			final ProcessBuilder builder = new ProcessBuilder(this.vsArrays);
+			if (this.isStreamed) {
+				this.executeStreamed(builder);
+			} else {
+				builder.redirectOutput(outputFile);
+				builder.redirectError(outputFile);
+				this.process = builder.start();
+				if (this.isKilled()) {
+					ProcessTree.destroy(this.process);
+				}
+				this.process.waitFor();
+			}
+
+			// grep exits with 2 on errors, those outputs are not worth keeping
+			if (cacheKey != null && !this.isKilled() && this.process.exitValue() < 2) {
+				this.cache.store(cacheKey, outputFile);
+			}
+		}
+
+		this.output.finish();
+		this.fireOutputChanged();
+	}
+
+	private void executeStreamed(ProcessBuilder builder) throws Exception {
+		builder.redirectErrorStream(true);
+		final FileOutputStream copy = new FileOutputStream(this.outputPath);
+		try {
+			this.process = builder.start();
+		} catch (final Exception e) {
+			copy.close();
+			throw e;
+		}
+		this.process.getOutputStream().close();
+		if (this.isKilled()) {
+			ProcessTree.destroy(this.process);
+		}
+
+		final OutputStreamer streamer = new OutputStreamer(this.process.getInputStream(), copy, new Runnable() {
+			@Override
+			public void run() {
+				// The lines are already in the output file, index them and
+				// let the listeners pick what they need
+				try {
+					ProcessJob.this.output.refresh();
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+				ProcessJob.this.fireOutputChanged();
+			}
+		}, this.batchSize, this.flushInterval);
+		streamer.run();
+		this.process.waitFor();
+		if (streamer.getFailure() != null) {
+			throw streamer.getFailure();
+		}
+	}
+
+	@Override
+	public LineStore getOutput() {
+		return this.output;
+	}
+
+	public String getOutputPath() {
+		return this.outputPath;
+	}
+
+	/**
+	 * Reuses the output of a previous run of the same command when none of
+	 * the inputs has changed since then, and stores the output of this run
+	 * otherwise.
+	 */
+	public void setCache(ResultCache cache, List<File> inputs) {
+		this.cache = cache;
+		this.inputs = inputs;
+	}
+
+	@Override
+	protected void onKill() {
+		final Process process = this.process;
+		if (process != null) {
+			ProcessTree.destroy(process);
+		}
+	}
+}
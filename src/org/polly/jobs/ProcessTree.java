@@ -0,0 +1,138 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.jobs;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Stops a process together with everything it started. A command run through
+ * /bin/sh -c is the shell, destroying only the shell leaves grep and the
+ * rest of a pipeline running and holding the output pipe open.
+ */
+public class ProcessTree {
+	/**
+	 * Sends a termination request to the process and all its descendants,
+	 * without waiting for them. Called on the event dispatch thread by kill:
+	 * the tree is walked by a thread of its own, on Java 8 it takes a pgrep
+	 * per process.
+	 */
+	public static void destroy(final Process process) {
+		final Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				ProcessTree.destroyTree(process);
+			}
+		}, "GrepUI process tree kill");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Uses the process API of Java 9 and later, returns false when it is not
+	 * available.
+	 */
+	private static boolean destroyDescendants(Process process) {
+		try {
+			final Method descendantsMethod = Process.class.getMethod("descendants");
+			final Method destroyMethod = Class.forName("java.lang.ProcessHandle").getMethod("destroy");
+			final List<?> descendants = ((Stream<?>) descendantsMethod.invoke(process)).collect(Collectors.toList());
+			for (final Object descendant : descendants) {
+				destroyMethod.invoke(descendant);
+			}
+			return true;
+		} catch (final Exception e) {
+			return false;
+		}
+	}
+
+	private static void destroyTree(Process process) {
+		// Descendants first, once the shell is gone its children are
+		// adopted by init and cannot be found anymore
+		if (!destroyDescendants(process)) {
+			final long pid = getPid(process);
+			if (pid > 0) {
+				final List<Long> descendants = new ArrayList<Long>();
+				listDescendants(pid, descendants);
+				kill(descendants);
+			}
+		}
+		process.destroy();
+	}
+
+	private static long getPid(Process process) {
+		try {
+			// UNIXProcess of Java 8
+			final Field pidField = process.getClass().getDeclaredField("pid");
+			pidField.setAccessible(true);
+			return pidField.getLong(process);
+		} catch (final Exception e) {
+			return -1;
+		}
+	}
+
+	private static void kill(List<Long> pids) {
+		if (pids.isEmpty()) {
+			return;
+		}
+
+		final List<String> command = new ArrayList<String>();
+		command.add("kill");
+		command.add("-TERM");
+		for (final Long pid : pids) {
+			command.add(pid.toString());
+		}
+		try {
+			new ProcessBuilder(command).start().waitFor();
+		} catch (final IOException | InterruptedException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private static void listDescendants(long pid, List<Long> descendants) {
+		try {
+			final Process pgrep = new ProcessBuilder("pgrep", "-P", Long.toString(pid)).start();
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(pgrep.getInputStream()));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					final long child = Long.parseLong(line.trim());
+					descendants.add(child);
+					listDescendants(child, descendants);
+				}
+			} finally {
+				reader.close();
+			}
+			pgrep.waitFor();
+		} catch (final IOException | InterruptedException | NumberFormatException e) {
+			// pgrep is missing, only the process itself is stopped
+		}
+	}
+
+	private ProcessTree() {
+
+	}
+}
@@ -0,0 +1,292 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.jobs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.polly.index.TrigramIndex;
+import org.polly.output.LineSink;
+import org.polly.output.LineStore;
+import org.polly.output.MemoryLineStore;
+import org.polly.search.CompressedInput;
+import org.polly.search.ParallelSearchEngine;
+import org.polly.search.SearchCheckpoint;
+import org.polly.search.SearchProgress;
+import org.polly.search.SearchQuery;
+import org.polly.search.TimeOrderedMerge;
+import org.polly.search.TimeWindow;
+
+/**
+ * Runs the internal {@link ParallelSearchEngine}, the matching lines are kept
+ * in memory by the job up to the memory budget, then on disk. An incremental
+ * job keeps a {@link SearchCheckpoint} for every file and searches only the
+ * bytes appended since the last run.
+ */
+public class SearchJob extends Job {
+	private final MemoryLineStore output;
+	private final List<File> files;
+	private final SearchQuery query;
+	private final File checkpointDirectory;
+	private final SearchProgress progress = new SearchProgress();
+	private volatile ParallelSearchEngine engine = null;
+	private volatile TimeOrderedMerge merge = null;
+	private TrigramIndex index = null;
+	private TimeWindow timeWindow = null;
+	private String mergeTimestampFormat = null;
+
+	public SearchJob(String description, List<File> files, SearchQuery query, long memoryBudget) {
+		this(description, files, query, memoryBudget, null);
+	}
+
+	public SearchJob(String description, List<File> files, SearchQuery query, long memoryBudget,
+			File checkpointDirectory) {
+		super(description);
+		this.output = new MemoryLineStore(memoryBudget);
+		this.files = files;
+		this.query = query;
+		this.checkpointDirectory = checkpointDirectory;
+	}
+
+	private void append(List<String> lines) {
+		this.progress.addMatches(lines.size());
+		this.output.append(lines);
+		this.fireOutputChanged();
+	}
+
+	@Override
+	protected void execute() throws Exception {
+		for (final File file : this.files) {
+			this.progress.addTotalBytes(file.length());
+		}
+
+		if (this.mergeTimestampFormat != null && this.files.size() > 1) {
+			this.executeMerged();
+			return;
+		}
+
+		if (this.checkpointDirectory == null) {
+			final ParallelSearchEngine engine = new ParallelSearchEngine(this.files, this.query, new LineSink() {
+				@Override
+				public void append(List<String> lines) {
+					SearchJob.this.append(lines);
+				}
+
+				@Override
+				public void close() {
+					// Nothing to do, the job ends with the engine
+				}
+			});
+			engine.setIndex(this.index);
+			engine.setProgress(this.progress);
+			engine.setTimeWindow(this.timeWindow);
+			this.engine = engine;
+			if (this.isKilled()) {
+				engine.cancel();
+			}
+			engine.run();
+			if (engine.getFailure() != null) {
+				throw engine.getFailure();
+			}
+			return;
+		}
+
+		final boolean isPrefixed = this.files.size() > 1;
+		for (final File file : this.files) {
+			if (this.isKilled()) {
+				break;
+			}
+			final String prefix = isPrefixed ? file.getPath() + ":" : "";
+			if (CompressedInput.isCompressed(file)) {
+				// Compressed logs do not grow, they are searched whole
+				this.executeWhole(file, prefix);
+			} else {
+				this.executeIncremental(file, prefix);
+			}
+		}
+	}
+
+	private void executeIncremental(File file, final String prefix) throws Exception {
+		final SearchCheckpoint checkpoint = SearchCheckpoint.load(this.checkpointDirectory, file, this.query);
+		final LineSink prefixedSink = this.newPrefixedSink(prefix);
+		checkpoint.readMatches(prefixedSink);
+
+		final IOException[] failure = new IOException[1];
+		final ParallelSearchEngine engine = new ParallelSearchEngine(file, checkpoint.getOffset(), this.query,
+				new LineSink() {
+					@Override
+					public void append(List<String> lines) {
+						try {
+							if (failure[0] == null) {
+								checkpoint.append(lines);
+							}
+						} catch (final IOException e) {
+							failure[0] = e;
+						}
+						prefixedSink.append(lines);
+					}
+
+					@Override
+					public void close() {
+						// The checkpoint is saved once the engine is over
+					}
+				});
+		engine.setIndex(this.index);
+		engine.setProgress(this.progress);
+		engine.setTimeWindow(this.timeWindow);
+		this.engine = engine;
+		if (this.isKilled()) {
+			engine.cancel();
+		}
+		engine.run();
+
+		if (engine.getEndOffset() >= 0 && failure[0] == null) {
+			checkpoint.save(engine.getEndOffset());
+		} else {
+			// The lines are searched again next time
+			checkpoint.close();
+		}
+
+		if (engine.getFailure() != null) {
+			throw engine.getFailure();
+		}
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+	private void executeMerged() throws Exception {
+		final TimeOrderedMerge merge = new TimeOrderedMerge(this.files, this.query, this.mergeTimestampFormat,
+				new LineSink() {
+					@Override
+					public void append(List<String> lines) {
+						SearchJob.this.append(lines);
+					}
+
+					@Override
+					public void close() {
+						// Nothing to do, the job ends with the merge
+					}
+				});
+		merge.setIndex(this.index);
+		merge.setProgress(this.progress);
+		merge.setTimeWindow(this.timeWindow);
+		this.merge = merge;
+		if (this.isKilled()) {
+			merge.cancel();
+		}
+		merge.run();
+		if (merge.getFailure() != null) {
+			throw merge.getFailure();
+		}
+	}
+
+	private void executeWhole(File file, String prefix) throws Exception {
+		final ParallelSearchEngine engine = new ParallelSearchEngine(Collections.singletonList(file), this.query,
+				this.newPrefixedSink(prefix));
+		engine.setProgress(this.progress);
+		engine.setTimeWindow(this.timeWindow);
+		this.engine = engine;
+		if (this.isKilled()) {
+			engine.cancel();
+		}
+		engine.run();
+		if (engine.getFailure() != null) {
+			throw engine.getFailure();
+		}
+	}
+
+	@Override
+	public LineStore getOutput() {
+		return this.output;
+	}
+
+	@Override
+	public SearchProgress getProgress() {
+		return this.progress;
+	}
+
+	/**
+	 * Returns a sink adding the lines of a file to the output, prefixed by
+	 * the file name when more than one file is searched.
+	 */
+	private LineSink newPrefixedSink(final String prefix) {
+		return new LineSink() {
+			@Override
+			public void append(List<String> lines) {
+				if (prefix.isEmpty()) {
+					SearchJob.this.append(lines);
+					return;
+				}
+
+				final List<String> prefixed = new ArrayList<String>(lines.size());
+				for (final String line : lines) {
+					prefixed.add(prefix + line);
+				}
+				SearchJob.this.append(prefixed);
+			}
+
+			@Override
+			public void close() {
+				// Nothing to do, the job goes on with the next file
+			}
+		};
+	}
+
+	@Override
+	protected void onKill() {
+		final ParallelSearchEngine engine = this.engine;
+		if (engine != null) {
+			engine.cancel();
+		}
+		final TimeOrderedMerge merge = this.merge;
+		if (merge != null) {
+			merge.cancel();
+		}
+	}
+
+	/**
+	 * Searches through the index the files below the indexed directories.
+	 * The index is only read, what was appended since the last index job is
+	 * searched whole.
+	 */
+	public void setIndex(TrigramIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Merges the matches of all the files by their timestamps, read in the
+	 * given format or a detected one, instead of showing them file by file.
+	 * Not to be used with the checkpoints of an incremental job.
+	 */
+	public void setTimeOrderedMerge(String timestampFormat) {
+		this.mergeTimestampFormat = timestampFormat;
+	}
+
+	/**
+	 * Searches only the lines between two times, not to be used with the
+	 * checkpoints of an incremental job.
+	 */
+	public void setTimeWindow(TimeWindow timeWindow) {
+		this.timeWindow = timeWindow;
+	}
+}
@@ -0,0 +1,172 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Line store backed by a text file. The file is memory mapped and scanned for
+ * new lines, only the offsets where each line starts are kept in memory in a
+ * primitive array so any line can be reached in constant time. The text is
+ * decoded on demand for the requested lines only.
+ *
+ * The file can still be growing: {@link #refresh()} indexes only the lines
+ * already terminated by a new line, {@link #finish()} has to be called once
+ * the writer is done in order to take the last unterminated line too.
+ */
+public class FileLineIndex implements LineStore {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final long MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+	private final File file;
+	private FileChannel channel;
+	private long[] lineStarts = new long[1024];
+	private int completeLines = 0;
+	private long indexedLength = 0;
+	private boolean isFinished = false;
+	private boolean isClosed = false;
+
+	public FileLineIndex(String path) {
+		this.file = new File(path);
+	}
+
+	private void addLineStart(long offset) {
+		this.completeLines++;
+		if (this.completeLines == this.lineStarts.length) {
+			this.lineStarts = Arrays.copyOf(this.lineStarts, this.lineStarts.length * 2);
+		}
+		this.lineStarts[this.completeLines] = offset;
+	}
+
+	/**
+	 * Frees the offsets and the file, the store reads as empty from now on.
+	 * A page still being loaded gets no line instead of a closed file.
+	 */
+	@Override
+	public synchronized void close() {
+		this.isClosed = true;
+		this.lineStarts = new long[1];
+		this.completeLines = 0;
+		this.indexedLength = 0;
+		if (this.channel != null) {
+			try {
+				this.channel.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+			this.channel = null;
+		}
+	}
+
+	public synchronized void finish() throws IOException {
+		this.refresh();
+		this.isFinished = true;
+	}
+
+	@Override
+	public long getDroppedLineCount() {
+		return 0;
+	}
+
+	@Override
+	public synchronized int getLineCount() {
+		if (this.isFinished && this.indexedLength > this.lineStarts[this.completeLines]) {
+			return this.completeLines + 1;
+		}
+		return this.completeLines;
+	}
+
+	private long getLineEnd(int line) {
+		if (line < this.completeLines) {
+			// exclude the new line
+			return this.lineStarts[line + 1] - 1;
+		}
+		return this.indexedLength;
+	}
+
+	@Override
+	public synchronized String getLines(int first, int count) {
+		final int last = Math.min(first + count, this.getLineCount()) - 1;
+		if (first < 0 || last < first || this.channel == null) {
+			return "";
+		}
+
+		final long start = this.lineStarts[first];
+		final long end = this.getLineEnd(last);
+		try {
+			final ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+			while (buffer.hasRemaining()) {
+				if (this.channel.read(buffer, start + buffer.position()) < 0) {
+					break;
+				}
+			}
+			return new String(buffer.array(), 0, buffer.position(), UTF8) + "\n";
+		} catch (final IOException e) {
+			return e.toString();
+		}
+	}
+
+	public synchronized String getTail(int count) {
+		final int lineCount = this.getLineCount();
+		final int first = Math.max(0, lineCount - count);
+		return this.getLines(first, lineCount - first);
+	}
+
+	public synchronized void refresh() throws IOException {
+		if (this.isFinished || this.isClosed) {
+			return;
+		}
+
+		if (this.channel == null) {
+			if (!this.file.exists()) {
+				return;
+			}
+			this.channel = new RandomAccessFile(this.file, "r").getChannel();
+		}
+
+		// Only the bytes written since the last refresh are mapped and
+		// scanned, a window at a time in order to keep the address space low
+		final long size = this.channel.size();
+		while (this.indexedLength < size) {
+			final long windowSize = Math.min(MAP_WINDOW_SIZE, size - this.indexedLength);
+			final MappedByteBuffer window = this.channel.map(FileChannel.MapMode.READ_ONLY, this.indexedLength,
+					windowSize);
+			final int limit = window.limit();
+			for (int i = 0; i < limit; i++) {
+				if (window.get(i) == '\n') {
+					this.addLineStart(this.indexedLength + i + 1);
+				}
+			}
+			this.indexedLength += windowSize;
+			MappedBuffers.unmap(window);
+		}
+	}
+
+	@Override
+	public void spill() {
+		// The lines are already on disk
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.output;
+
+/**
+ * A read only sequence of text lines that can be accessed by line number
+ * without keeping the whole text in memory.
+ */
+public interface LineStore {
+	public void close();
+
+	/**
+	 * Returns how many lines were dropped from the head of the store so far,
+	 * line numbers move back by the same amount.
+	 */
+	public long getDroppedLineCount();
+
+	public int getLineCount();
+
+	/**
+	 * Returns the lines from first (included) to first + count (excluded),
+	 * each one terminated by a new line.
+	 */
+	public String getLines(int first, int count);
+
+	/**
+	 * Moves to disk whatever the store keeps in memory, to be called when
+	 * nobody is looking at the lines for a while.
+	 */
+	public void spill();
+}
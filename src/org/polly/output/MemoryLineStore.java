@@ -0,0 +1,192 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Line store kept in memory, used when the lines do not come from a file.
+ * The lines are stored encoded in UTF-8 into a single growing byte array
+ * together with the offsets where each line starts.
+ *
+ * Once the memory budget is exceeded, or when asked by {@link #spill()}, the
+ * lines are moved into a temporary file and the store keeps going as a
+ * {@link FileLineIndex} over it. When the file cannot be created the lines
+ * stay in memory past the budget, a failure writing to the file once the
+ * lines are there is thrown to the producer.
+ */
+public class MemoryLineStore implements LineStore {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final long memoryBudget;
+	private byte[] data = new byte[64 * 1024];
+	private int size = 0;
+	private int[] lineStarts = new int[1024];
+	private int lineCount = 0;
+	private File spillFile = null;
+	private OutputStream spillOutput = null;
+	private FileLineIndex spilled = null;
+	private boolean isSpillFailed = false;
+
+	public MemoryLineStore() {
+		this(Integer.MAX_VALUE);
+	}
+
+	public MemoryLineStore(long memoryBudget) {
+		this.memoryBudget = Math.min(memoryBudget, Integer.MAX_VALUE);
+	}
+
+	public synchronized void append(List<String> lines) {
+		if (this.spilled != null) {
+			this.appendToFile(lines);
+			return;
+		}
+
+		for (int i = 0; i < lines.size(); i++) {
+			final byte[] bytes = (lines.get(i) + "\n").getBytes(UTF8);
+			if (!this.isSpillFailed && this.size + (long) bytes.length > this.memoryBudget && this.moveToFile()) {
+				this.appendToFile(lines.subList(i, lines.size()));
+				return;
+			}
+
+			if (this.size + bytes.length > this.data.length) {
+				final long capacity = this.isSpillFailed ? Integer.MAX_VALUE : this.memoryBudget;
+				this.data = Arrays.copyOf(this.data,
+						(int) Math.min(capacity, Math.max(this.data.length * 2L, this.size + bytes.length)));
+			}
+			System.arraycopy(bytes, 0, this.data, this.size, bytes.length);
+			this.size += bytes.length;
+
+			this.lineCount++;
+			if (this.lineCount == this.lineStarts.length) {
+				this.lineStarts = Arrays.copyOf(this.lineStarts, this.lineStarts.length * 2);
+			}
+			this.lineStarts[this.lineCount] = this.size;
+		}
+	}
+
+	private void appendToFile(List<String> lines) {
+		try {
+			final StringBuilder sb = new StringBuilder();
+			for (final String line : lines) {
+				sb.append(line).append('\n');
+			}
+			this.spillOutput.write(sb.toString().getBytes(UTF8));
+			this.spilled.refresh();
+		} catch (final IOException e) {
+			// The lines already there stay readable, these ones are lost
+			throw new UncheckedIOException("Cannot write the output to " + this.spillFile, e);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		this.data = new byte[0];
+		this.size = 0;
+		this.lineStarts = new int[1];
+		this.lineCount = 0;
+		this.deleteSpillFile();
+	}
+
+	private void deleteSpillFile() {
+		if (this.spilled != null) {
+			this.spilled.close();
+			this.spilled = null;
+		}
+		if (this.spillOutput != null) {
+			try {
+				this.spillOutput.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+			this.spillOutput = null;
+		}
+		if (this.spillFile != null) {
+			this.spillFile.delete();
+			this.spillFile = null;
+		}
+	}
+
+	@Override
+	public long getDroppedLineCount() {
+		return 0;
+	}
+
+	@Override
+	public synchronized int getLineCount() {
+		if (this.spilled != null) {
+			return this.spilled.getLineCount();
+		}
+		return this.lineCount;
+	}
+
+	@Override
+	public synchronized String getLines(int first, int count) {
+		if (this.spilled != null) {
+			return this.spilled.getLines(first, count);
+		}
+
+		final int last = Math.min(first + count, this.lineCount);
+		if (first < 0 || last <= first) {
+			return "";
+		}
+
+		final int start = this.lineStarts[first];
+		return new String(this.data, start, this.lineStarts[last] - start, UTF8);
+	}
+
+	/**
+	 * Moves the lines to a temporary file, or keeps them in memory and
+	 * returns false when the file cannot be written.
+	 */
+	private boolean moveToFile() {
+		try {
+			this.spillFile = File.createTempFile("grepui-", ".spill");
+			this.spillFile.deleteOnExit();
+			this.spillOutput = new FileOutputStream(this.spillFile);
+			this.spillOutput.write(this.data, 0, this.size);
+
+			this.spilled = new FileLineIndex(this.spillFile.getPath());
+			this.spilled.refresh();
+		} catch (final IOException e) {
+			e.printStackTrace();
+			this.deleteSpillFile();
+			this.isSpillFailed = true;
+			return false;
+		}
+
+		this.data = new byte[0];
+		this.lineStarts = new int[1];
+		return true;
+	}
+
+	@Override
+	public synchronized void spill() {
+		if (this.spilled == null && !this.isSpillFailed && this.lineCount > 0) {
+			this.moveToFile();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Pumps the output of a process into the output file while the process is
+ * still running, and tells the listener when new lines are in the file. The
+ * bytes are copied as is and never decoded, the readers of the file decode
+ * only the lines they show.
+ *
+ * The listener is told when a batch of lines is written, when the flush
+ * interval is elapsed or when the process has nothing more to say for the
+ * moment, so the first lines show up as soon as they are produced.
+ */
+public class OutputStreamer implements Runnable {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final InputStream input;
+	private final OutputStream copy;
+	private final Runnable listener;
+	private final int batchSize;
+	private final long flushInterval;
+
+	private int pendingLines = 0;
+	private long lastFlush;
+	private volatile IOException failure = null;
+
+	public OutputStreamer(InputStream input, OutputStream copy, Runnable listener, int batchSize,
+			long flushInterval) {
+		this.input = input;
+		this.copy = copy;
+		this.listener = listener;
+		this.batchSize = Math.max(1, batchSize);
+		this.flushInterval = Math.max(0, flushInterval);
+	}
+
+	private void flush() throws IOException {
+		this.copy.flush();
+		this.lastFlush = System.currentTimeMillis();
+		if (this.pendingLines == 0) {
+			return;
+		}
+
+		this.pendingLines = 0;
+		this.listener.run();
+	}
+
+	/**
+	 * Returns the error that stopped the copy, or null.
+	 */
+	public IOException getFailure() {
+		return this.failure;
+	}
+
+	@Override
+	public void run() {
+		final byte[] buffer = new byte[BUFFER_SIZE];
+		this.lastFlush = System.currentTimeMillis();
+		try {
+			int read;
+			while ((read = this.input.read(buffer)) != -1) {
+				this.copy.write(buffer, 0, read);
+				for (int i = 0; i < read; i++) {
+					if (buffer[i] == '\n') {
+						this.pendingLines++;
+					}
+				}
+
+				if (this.pendingLines >= this.batchSize || this.input.available() == 0
+						|| System.currentTimeMillis() - this.lastFlush >= this.flushInterval) {
+					// Nothing more is ready right now, show what we have
+					this.flush();
+				}
+			}
+			this.flush();
+		} catch (final IOException e) {
+			this.failure = e;
+		} finally {
+			try {
+				this.copy.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+			try {
+				this.input.close();
+			} catch (final IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.output;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the output of the last commands on disk. An entry is found by the
+ * command and the fingerprint (size, modification time and inode) of every
+ * input file, so a rotated or appended log never gives back an old result.
+ * The least recently used entries are removed once the cache grows over its
+ * size. Only the given input files are looked at: a command reading anything
+ * else gets back its old output, the cache is off unless configured.
+ */
+public class ResultCache {
+	private static final String entrySuffix = ".out";
+
+	/**
+	 * Gives the inode of the file, or its file key outside unix, the value
+	 * changes when a log is rotated even if the new file has the same name.
+	 */
+	public static Object getInode(Path path, BasicFileAttributes attributes) {
+		try {
+			return Files.getAttribute(path, "unix:ino");
+		} catch (final UnsupportedOperationException | IllegalArgumentException | IOException e) {
+			// Not a unix file system, the file key is the best we have
+			return attributes.fileKey();
+		}
+	}
+
+	public static String toHex(byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (final byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+			hex.append(Character.forDigit(b & 0xF, 16));
+		}
+		return hex.toString();
+	}
+
+	private final File directory;
+	private final long maxSize;
+
+	public ResultCache(File directory, long maxSize) {
+		this.directory = directory;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache fits its size.
+	 */
+	private void evict() {
+		final File[] entries = this.directory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(entrySuffix);
+			}
+		});
+		if (entries == null) {
+			return;
+		}
+
+		long size = 0;
+		for (final File entry : entries) {
+			size += entry.length();
+		}
+
+		Arrays.sort(entries, new Comparator<File>() {
+			@Override
+			public int compare(File o1, File o2) {
+				return Long.compare(o1.lastModified(), o2.lastModified());
+			}
+		});
+
+		for (int i = 0; i < entries.length && size > this.maxSize; i++) {
+			final long length = entries[i].length();
+			if (entries[i].delete()) {
+				size -= length;
+			}
+		}
+	}
+
+	/**
+	 * Gives the key of the command run on the given input files, the key
+	 * changes as soon as one of the files changes.
+	 */
+	public String getKey(String command, List<File> inputs) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+
+		final StringBuilder fingerprint = new StringBuilder(command);
+		for (final File input : inputs) {
+			final Path path = input.toPath();
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			fingerprint.append('\n').append(input.getAbsolutePath());
+			fingerprint.append('\t').append(attributes.size());
+			fingerprint.append('\t').append(attributes.lastModifiedTime().toMillis());
+			fingerprint.append('\t').append(getInode(path, attributes));
+		}
+
+		return toHex(digest.digest(fingerprint.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * Gives back the output stored with the key, or null. The entry becomes
+	 * the most recently used one.
+	 */
+	public File lookup(String key) {
+		final File entry = new File(this.directory, key + entrySuffix);
+		if (!entry.isFile()) {
+			return null;
+		}
+
+		entry.setLastModified(System.currentTimeMillis());
+		return entry;
+	}
+
+	/**
+	 * Copies the output of a command into the cache. Outputs bigger than the
+	 * whole cache are not stored.
+	 */
+	public void store(String key, File output) throws IOException {
+		if (output.length() > this.maxSize) {
+			return;
+		}
+
+		if (!this.directory.isDirectory() && !this.directory.mkdirs()) {
+			throw new IOException("Unable to create " + this.directory);
+		}
+
+		// Copy then rename, a concurrent lookup never sees half an entry
+		final File temp = File.createTempFile(key, ".tmp", this.directory);
+		try {
+			Files.copy(output.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(temp.toPath(), new File(this.directory, key + entrySuffix).toPath(),
+					StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+
+		this.evict();
+	}
+}
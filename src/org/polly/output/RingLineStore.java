@@ -0,0 +1,84 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.output;
+
+import java.util.List;
+
+/**
+ * Line store that keeps only the last lines appended: once the capacity is
+ * reached every new line pushes out the oldest one, so the memory used stays
+ * the same however long the lines keep coming.
+ */
+public class RingLineStore implements LineStore {
+	private final String[] lines;
+	private int first = 0;
+	private int lineCount = 0;
+	private long droppedLineCount = 0;
+
+	public RingLineStore(int capacity) {
+		this.lines = new String[Math.max(1, capacity)];
+	}
+
+	public synchronized void append(List<String> newLines) {
+		for (final String line : newLines) {
+			if (this.lineCount < this.lines.length) {
+				this.lines[(this.first + this.lineCount) % this.lines.length] = line;
+				this.lineCount++;
+			} else {
+				this.lines[this.first] = line;
+				this.first = (this.first + 1) % this.lines.length;
+				this.droppedLineCount++;
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		this.first = 0;
+		this.lineCount = 0;
+		for (int i = 0; i < this.lines.length; i++) {
+			this.lines[i] = null;
+		}
+	}
+
+	@Override
+	public synchronized long getDroppedLineCount() {
+		return this.droppedLineCount;
+	}
+
+	@Override
+	public synchronized int getLineCount() {
+		return this.lineCount;
+	}
+
+	@Override
+	public synchronized String getLines(int first, int count) {
+		final int end = Math.min(first + count, this.lineCount);
+		final StringBuilder sb = new StringBuilder();
+		for (int i = Math.max(0, first); i < end; i++) {
+			sb.append(this.lines[(this.first + i) % this.lines.length]).append('\n');
+		}
+		return sb.toString();
+	}
+
+	@Override
+	public void spill() {
+		// The store is already bounded, nothing worth moving to disk
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton: finds every occurrence of a set of words, overlaps
+ * included, with a single pass over the text whatever is the number of words.
+ */
+public class AhoCorasick {
+	public interface MatchHandler {
+		public void onMatch(int start, int end, int word);
+	}
+
+	private final String[] words;
+	private final char[][] transitionKeys;
+	private final int[][] transitionTargets;
+	private final int[] failure;
+	private final int[] output;
+	private final int[] outputLink;
+	private final int maxLength;
+
+	/**
+	 * Words must be not empty and unique, the word index reported to the
+	 * {@link MatchHandler} is the position in this list.
+	 */
+	public AhoCorasick(List<String> words) {
+		this.words = words.toArray(new String[words.size()]);
+
+		// Build the trie
+		final List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+		final List<Integer> outputs = new ArrayList<Integer>();
+		trie.add(new TreeMap<Character, Integer>());
+		outputs.add(-1);
+
+		int maxLength = 0;
+		for (int w = 0; w < this.words.length; w++) {
+			final String word = this.words[w];
+			maxLength = Math.max(maxLength, word.length());
+
+			int state = 0;
+			for (int i = 0; i < word.length(); i++) {
+				Integer next = trie.get(state).get(word.charAt(i));
+				if (next == null) {
+					next = trie.size();
+					trie.add(new TreeMap<Character, Integer>());
+					outputs.add(-1);
+					trie.get(state).put(word.charAt(i), next);
+				}
+				state = next;
+			}
+			outputs.set(state, w);
+		}
+		this.maxLength = maxLength;
+
+		// Flatten the transitions into sorted primitive arrays
+		final int states = trie.size();
+		this.transitionKeys = new char[states][];
+		this.transitionTargets = new int[states][];
+		this.output = new int[states];
+		for (int s = 0; s < states; s++) {
+			final TreeMap<Character, Integer> transitions = trie.get(s);
+			this.transitionKeys[s] = new char[transitions.size()];
+			this.transitionTargets[s] = new int[transitions.size()];
+			int i = 0;
+			for (final Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+				this.transitionKeys[s][i] = entry.getKey();
+				this.transitionTargets[s][i] = entry.getValue();
+				i++;
+			}
+			this.output[s] = outputs.get(s);
+		}
+
+		// Breadth first computation of the failure and output links
+		this.failure = new int[states];
+		this.outputLink = new int[states];
+		Arrays.fill(this.outputLink, -1);
+		final Queue<Integer> queue = new LinkedList<Integer>();
+		for (final int child : this.transitionTargets[0]) {
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			final int state = queue.poll();
+			for (int i = 0; i < this.transitionKeys[state].length; i++) {
+				final char c = this.transitionKeys[state][i];
+				final int child = this.transitionTargets[state][i];
+
+				final int fallback = this.next(this.failure[state], c);
+				this.failure[child] = fallback;
+				this.outputLink[child] = this.output[fallback] >= 0 ? fallback : this.outputLink[fallback];
+				queue.add(child);
+			}
+		}
+	}
+
+	public int getMaxLength() {
+		return this.maxLength;
+	}
+
+	public String getWord(int word) {
+		return this.words[word];
+	}
+
+	private int next(int state, char c) {
+		while (true) {
+			final int found = Arrays.binarySearch(this.transitionKeys[state], c);
+			if (found >= 0) {
+				return this.transitionTargets[state][found];
+			}
+			if (state == 0) {
+				return 0;
+			}
+			state = this.failure[state];
+		}
+	}
+
+	/**
+	 * Reports, in order of end position, every occurrence fully contained in
+	 * text[from, to).
+	 */
+	public void scan(CharSequence text, int from, int to, MatchHandler handler) {
+		int state = 0;
+		for (int i = from; i < to; i++) {
+			state = this.next(state, text.charAt(i));
+
+			int found = this.output[state] >= 0 ? state : this.outputLink[state];
+			while (found >= 0) {
+				final int word = this.output[found];
+				handler.onMatch(i + 1 - this.words[word].length(), i + 1, word);
+				found = this.outputLink[found];
+			}
+		}
+	}
+}
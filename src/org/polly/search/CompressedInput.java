@@ -0,0 +1,107 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads rotated logs compressed by gzip or zstd without extracting them to
+ * disk. Gzip is decoded by the JDK, zstd through the zstd command that has
+ * to be on the PATH, its output is read through a pipe.
+ */
+public class CompressedInput {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	public static boolean isCompressed(File file) {
+		final String name = file.getName();
+		return name.endsWith(".gz") || name.endsWith(".zst");
+	}
+
+	/**
+	 * Opens the decompressed content of the file, closing the stream stops
+	 * the decompression. Reading past the end fails when the file could not
+	 * be decompressed whole.
+	 */
+	public static InputStream open(final File file) throws IOException {
+		if (file.getName().endsWith(".gz")) {
+			return new GZIPInputStream(new FileInputStream(file), BUFFER_SIZE);
+		}
+
+		final ProcessBuilder builder = new ProcessBuilder("zstd", "-dcq", "--", file.getPath());
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		final Process process;
+		try {
+			process = builder.start();
+		} catch (final IOException e) {
+			throw new IOException("zstd is needed to read " + file.getPath(), e);
+		}
+		process.getOutputStream().close();
+
+		return new FilterInputStream(process.getInputStream()) {
+			private boolean isChecked = false;
+
+			/**
+			 * A corrupt or truncated file ends the output early, only the
+			 * exit status of zstd tells.
+			 */
+			private int checkEnd(int read) throws IOException {
+				if (read < 0 && !this.isChecked) {
+					this.isChecked = true;
+					final int status;
+					try {
+						status = process.waitFor();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("Interrupted while reading " + file.getPath());
+					}
+					if (status != 0) {
+						throw new IOException("zstd failed to read " + file.getPath() + ", exit status " + status);
+					}
+				}
+				return read;
+			}
+
+			@Override
+			public void close() throws IOException {
+				super.close();
+				process.destroy();
+			}
+
+			@Override
+			public int read() throws IOException {
+				return this.checkEnd(super.read());
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return this.checkEnd(super.read(b, off, len));
+			}
+		};
+	}
+
+	private CompressedInput() {
+
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Expands the filename option the same way the shell would do it for the
+ * grep command: a space separated list of paths where * and ? can be used in
+ * any path component.
+ */
+public class FileGlob {
+	private static boolean hasWildcard(String text) {
+		return text.indexOf('*') >= 0 || text.indexOf('?') >= 0 || text.indexOf('[') >= 0;
+	}
+
+	public static List<File> expand(String filenames) {
+		final List<File> files = new ArrayList<File>();
+		for (final String token : filenames.trim().split("\\s+")) {
+			if (token.isEmpty()) {
+				continue;
+			}
+
+			String path = token;
+			if (path.startsWith("~")) {
+				path = System.getProperty("user.home") + path.substring(1);
+			}
+
+			File root;
+			if (path.startsWith(File.separator)) {
+				root = new File(File.separator);
+			} else {
+				root = new File(System.getProperty("user.dir"));
+			}
+
+			final List<String> components = new ArrayList<String>();
+			for (final String component : path.split(File.separator.equals("\\") ? "\\\\" : File.separator)) {
+				if (!component.isEmpty() && !component.equals(".")) {
+					components.add(component);
+				}
+			}
+
+			final List<File> tokenFiles = new ArrayList<File>();
+			expand(root, components, 0, tokenFiles);
+			for (final File file : tokenFiles) {
+				// Relative patterns give relative names, like the shell does
+				files.add(path.startsWith(File.separator) ? file : root.toPath().relativize(file.toPath()).toFile());
+			}
+		}
+
+		return files;
+	}
+
+	private static void expand(File directory, List<String> components, int index, List<File> files) {
+		if (index == components.size()) {
+			if (directory.isFile()) {
+				files.add(directory);
+			}
+			return;
+		}
+
+		final String component = components.get(index);
+		if (!hasWildcard(component)) {
+			expand(new File(directory, component), components, index + 1, files);
+			return;
+		}
+
+		final String[] children = directory.list();
+		if (children == null) {
+			return;
+		}
+
+		// Shell expansions are sorted, keep the same order of grep output
+		Arrays.sort(children);
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + component);
+		for (final String child : children) {
+			if (child.startsWith(".") && !component.startsWith(".")) {
+				continue;
+			}
+			if (matcher.matches(new File(child).toPath())) {
+				expand(new File(directory, child), components, index + 1, files);
+			}
+		}
+	}
+
+	private FileGlob() {
+
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Wraps the text given to a regular expression so that the evaluation stops
+ * with a {@link CancellationException} as soon as the thread running it is
+ * interrupted, even in the middle of a catastrophic backtracking.
+ */
+public class InterruptibleCharSequence implements CharSequence {
+	private static final int CHECK_INTERVAL = 4096;
+
+	private final CharSequence text;
+	private int untilCheck = CHECK_INTERVAL;
+
+	public InterruptibleCharSequence(CharSequence text) {
+		this.text = text;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (--this.untilCheck == 0) {
+			this.untilCheck = CHECK_INTERVAL;
+			if (Thread.currentThread().isInterrupted()) {
+				throw new CancellationException();
+			}
+		}
+		return this.text.charAt(index);
+	}
+
+	@Override
+	public int length() {
+		return this.text.length();
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new InterruptibleCharSequence(this.text.subSequence(start, end));
+	}
+
+	@Override
+	public String toString() {
+		return this.text.toString();
+	}
+}
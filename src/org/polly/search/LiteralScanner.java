@@ -0,0 +1,152 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Finds a literal required by a query straight in the UTF-8 bytes of a file,
+ * so the text that does not contain it is never decoded. The bytes are read
+ * eight at a time and tested all at once for the first byte of the literal
+ * (SWAR), the full literal is checked only where that byte is found.
+ */
+public class LiteralScanner {
+	private static final long ONES = 0x0101010101010101L;
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long CASE_BITS = 0x2020202020202020L;
+
+	private static boolean isUsable(String literal, boolean isIgnoreCase) {
+		for (int i = 0; i < literal.length(); i++) {
+			final char c = literal.charAt(i);
+			if (c == '\n') {
+				return false;
+			}
+
+			// Ignoring the case, non ASCII letters match in many byte forms
+			// and i, k and s match some of them too (the Kelvin sign, the
+			// long s, the dotted I)
+			final char lower = Character.toLowerCase(c);
+			if (isIgnoreCase && (c >= 0x80 || lower == 'i' || lower == 'k' || lower == 's')) {
+				return false;
+			}
+		}
+		return !literal.isEmpty();
+	}
+
+	private static int lower(int b) {
+		return b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+	}
+
+	/**
+	 * Returns a scanner for the longest literal that every matching line
+	 * contains, or null when the query has to look at every line.
+	 */
+	public static LiteralScanner of(SearchQuery query) {
+		final List<String> literals = query.getRequiredLiterals();
+		String best = null;
+		for (final String literal : literals) {
+			if (isUsable(literal, query.isIgnoreCase()) && (best == null || literal.length() > best.length())) {
+				best = literal;
+			}
+		}
+		if (best == null) {
+			return null;
+		}
+
+		// When the literal is the whole query, finding it is finding a match
+		final boolean isLiteralQuery = query.isFixed() || literals.size() == 1 && best.equals(query.getText());
+		return new LiteralScanner(best, query.isIgnoreCase(), isLiteralQuery && !query.isWholeWord());
+	}
+
+	private final byte[] literal;
+	private final boolean isIgnoreCase;
+	private final boolean isExact;
+	private final long firstBytes;
+	private final long caseMask;
+
+	private LiteralScanner(String literal, boolean isIgnoreCase, boolean isExact) {
+		this.literal = literal.getBytes(StandardCharsets.UTF_8);
+		this.isIgnoreCase = isIgnoreCase;
+		this.isExact = isExact;
+		if (isIgnoreCase) {
+			for (int i = 0; i < this.literal.length; i++) {
+				this.literal[i] = (byte) lower(this.literal[i]);
+			}
+		}
+
+		final int first = this.literal[0] & 0xFF;
+		this.firstBytes = first * ONES;
+		// Setting the case bit folds both cases of a letter on the lower one,
+		// other bytes may fold on the first byte too but they are rejected by
+		// the full check
+		this.caseMask = isIgnoreCase && first >= 'a' && first <= 'z' ? CASE_BITS : 0;
+	}
+
+	/**
+	 * Returns the position of the first occurrence of the literal between
+	 * from (included) and to (excluded), or -1.
+	 */
+	public int indexOf(ByteBuffer bytes, int from, int to) {
+		final int last = to - this.literal.length;
+		int i = from;
+		while (i + 8 <= last + 1) {
+			final long word = (bytes.getLong(i) | this.caseMask) ^ this.firstBytes;
+			// A zero byte in the word is a candidate, borrows may give false
+			// positives above a real one but never hide it
+			if (((word - ONES) & ~word & HIGH_BITS) != 0) {
+				for (int j = i; j < i + 8; j++) {
+					if (this.isAt(bytes, j)) {
+						return j;
+					}
+				}
+			}
+			i += 8;
+		}
+
+		for (; i <= last; i++) {
+			if (this.isAt(bytes, i)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isAt(ByteBuffer bytes, int position) {
+		for (int k = 0; k < this.literal.length; k++) {
+			int b = bytes.get(position + k);
+			if (this.isIgnoreCase) {
+				b = lower(b);
+			}
+			if (b != this.literal[k]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true when a line containing the literal matches the query,
+	 * false when the line has still to be matched by the query.
+	 */
+	public boolean isExact() {
+		return this.isExact;
+	}
+}
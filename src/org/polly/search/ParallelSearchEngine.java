@@ -0,0 +1,614 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.polly.index.TrigramIndex;
+import org.polly.output.LineSink;
+import org.polly.output.MappedBuffers;
+
+/**
+ * Searches a set of files inside the JVM. Every file is split in chunks
+ * aligned to line boundaries and the chunks are searched in parallel on a
+ * {@link ForkJoinPool}, the matching lines are then delivered to the sink in
+ * file and line order, prefixed by the file name when more than one file is
+ * searched, like grep does. Compressed files are decompressed on the fly, each
+ * one by its own thread.
+ *
+ * When the query requires a literal the mapped bytes are scanned for it by a
+ * {@link LiteralScanner} and only the lines containing it are decoded, the
+ * other queries decode the whole chunk.
+ */
+public class ParallelSearchEngine implements Runnable {
+	/**
+	 * A part of the search started ahead of its turn, its matches are handed
+	 * to the sink once the parts before it are delivered.
+	 */
+	private abstract static class Work {
+		abstract void cancel();
+
+		abstract void deliver(LineSink sink) throws Exception;
+
+		abstract void start();
+	}
+
+	/**
+	 * A chunk of a file, searched by a task of the pool.
+	 */
+	private class ChunkWork extends Work {
+		private final FileChannel channel;
+		private final long chunkStart;
+		private final long chunkEnd;
+		private final String prefix;
+		private ForkJoinTask<List<String>> task = null;
+
+		ChunkWork(FileChannel channel, long chunkStart, long chunkEnd, String prefix) {
+			this.channel = channel;
+			this.chunkStart = chunkStart;
+			this.chunkEnd = chunkEnd;
+			this.prefix = prefix;
+		}
+
+		@Override
+		void cancel() {
+			if (this.task != null) {
+				this.task.cancel(false);
+			}
+		}
+
+		@Override
+		void deliver(LineSink sink) {
+			final List<String> lines = this.task.join();
+			if (!lines.isEmpty()) {
+				sink.append(lines);
+			}
+		}
+
+		@Override
+		void start() {
+			this.task = pool.submit(new Callable<List<String>>() {
+				@Override
+				public List<String> call() throws Exception {
+					return ParallelSearchEngine.this.searchChunk(ChunkWork.this.channel, ChunkWork.this.chunkStart,
+							ChunkWork.this.chunkEnd, ChunkWork.this.prefix);
+				}
+			});
+		}
+	}
+
+	/**
+	 * A compressed file, decompressed by its own thread into a bounded queue
+	 * of batches: a file ahead of its turn waits instead of keeping all its
+	 * matches in memory.
+	 */
+	private class CompressedWork extends Work {
+		private final File file;
+		private final String prefix;
+		private final BlockingQueue<List<String>> batches = new ArrayBlockingQueue<List<String>>(
+				COMPRESSED_QUEUE_CAPACITY);
+		private volatile boolean isAbandoned = false;
+		private volatile Exception failure = null;
+
+		CompressedWork(File file, String prefix) {
+			this.file = file;
+			this.prefix = prefix;
+		}
+
+		@Override
+		void cancel() {
+			this.isAbandoned = true;
+		}
+
+		@Override
+		void deliver(LineSink sink) throws Exception {
+			while (!ParallelSearchEngine.this.isCancelled) {
+				final List<String> batch = this.batches.poll(100, TimeUnit.MILLISECONDS);
+				if (batch == END_OF_FILE) {
+					break;
+				}
+				if (batch != null) {
+					sink.append(batch);
+				}
+			}
+			if (this.failure != null) {
+				throw this.failure;
+			}
+		}
+
+		private void put(List<String> batch) {
+			try {
+				while (!this.isAbandoned && !ParallelSearchEngine.this.isCancelled
+						&& !this.batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+					// The files before this one are not delivered yet
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.isAbandoned = true;
+			}
+		}
+
+		@Override
+		void start() {
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						ParallelSearchEngine.this.searchCompressed(CompressedWork.this.file,
+								CompressedWork.this.prefix, new LineSink() {
+									@Override
+									public void append(List<String> lines) {
+										CompressedWork.this.put(lines);
+									}
+
+									@Override
+									public void close() {
+										// The end is put once the search is over
+									}
+								});
+						ParallelSearchEngine.this.progress.addScannedBytes(CompressedWork.this.file.length());
+					} catch (final Exception e) {
+						CompressedWork.this.failure = e;
+					} finally {
+						CompressedWork.this.put(END_OF_FILE);
+					}
+				}
+			}, "GrepUI decompression of " + this.file.getName());
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final int BOUNDARY_LOOKUP_SIZE = 64 * 1024;
+	private static final int COMPRESSED_BATCH_SIZE = 1000;
+	private static final int COMPRESSED_QUEUE_CAPACITY = 4;
+	private static final List<String> END_OF_FILE = Collections.unmodifiableList(new ArrayList<String>());
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	private final List<File> files;
+	private final long startOffset;
+	private final boolean isIncremental;
+	private final SearchQuery query;
+	private final LiteralScanner scanner;
+	private final LineSink sink;
+	private volatile boolean isCancelled = false;
+	private volatile long endOffset = -1;
+	private volatile Exception failure = null;
+	private TrigramIndex index = null;
+	private TimeWindow timeWindow = null;
+	private SearchProgress progress = new SearchProgress();
+
+	/**
+	 * Searches the tail of a growing file: from the given offset up to its
+	 * last complete line, a line still being written is left to the next
+	 * search. The lines are not prefixed by the file name.
+	 */
+	public ParallelSearchEngine(File file, long startOffset, SearchQuery query, LineSink sink) {
+		this(Collections.singletonList(file), startOffset, true, query, sink);
+	}
+
+	public ParallelSearchEngine(List<File> files, SearchQuery query, LineSink sink) {
+		this(files, 0, false, query, sink);
+	}
+
+	private ParallelSearchEngine(List<File> files, long startOffset, boolean isIncremental, SearchQuery query,
+			LineSink sink) {
+		this.files = files;
+		this.startOffset = startOffset;
+		this.isIncremental = isIncremental;
+		this.query = query;
+		this.scanner = LiteralScanner.of(query);
+		this.sink = sink;
+	}
+
+	public void cancel() {
+		this.isCancelled = true;
+	}
+
+	private List<Long> findChunkBoundaries(FileChannel channel, long start, long size) throws IOException {
+		final List<Long> boundaries = new ArrayList<Long>();
+		boundaries.add(start);
+
+		final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_LOOKUP_SIZE);
+		long next = start + CHUNK_SIZE;
+		while (next < size) {
+			// Move the boundary just after the first new line
+			long position = next;
+			long boundary = size;
+			buffer.clear();
+			int read;
+			while (boundary == size && (read = channel.read(buffer, position)) > 0) {
+				for (int i = 0; i < read; i++) {
+					if (buffer.get(i) == '\n') {
+						boundary = position + i + 1;
+						break;
+					}
+				}
+				position += read;
+				buffer.clear();
+			}
+
+			if (boundary < size) {
+				boundaries.add(boundary);
+			}
+			next = boundary + CHUNK_SIZE;
+		}
+		boundaries.add(size);
+
+		return boundaries;
+	}
+
+	/**
+	 * Gives the offset just after the last new line between start and end,
+	 * or start when there is none.
+	 */
+	private long findLastLineEnd(FileChannel channel, long start, long end) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(BOUNDARY_LOOKUP_SIZE);
+		long position = end;
+		while (position > start) {
+			final int length = (int) Math.min(BOUNDARY_LOOKUP_SIZE, position - start);
+			position -= length;
+			buffer.clear();
+			buffer.limit(length);
+			int read = 0;
+			while (read < length) {
+				final int count = channel.read(buffer, position + read);
+				if (count < 0) {
+					break;
+				}
+				read += count;
+			}
+			for (int i = read - 1; i >= 0; i--) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+		}
+
+		return start;
+	}
+
+	/**
+	 * Gives the offset just after the last line searched by an incremental
+	 * search, where the next one has to start, or -1 when the search did not
+	 * complete.
+	 */
+	public long getEndOffset() {
+		return this.endOffset;
+	}
+
+	/**
+	 * Returns the error that stopped the search, or null when it did not
+	 * fail. The lines delivered before the error are in the sink.
+	 */
+	public Exception getFailure() {
+		return this.failure;
+	}
+
+	public boolean isCancelled() {
+		return this.isCancelled;
+	}
+
+	@Override
+	public void run() {
+		final List<FileChannel> channels = new ArrayList<FileChannel>();
+		final List<Work> work = new ArrayList<Work>();
+		final Deque<Work> started = new ArrayDeque<Work>();
+		long fileEnd = 0;
+		try {
+			final boolean isPrefixed = this.files.size() > 1;
+			final int[] trigrams = this.index == null ? null : TrigramIndex.getTrigrams(this.query);
+			for (final File file : this.files) {
+				final String prefix = isPrefixed ? file.getPath() + ":" : "";
+				if (CompressedInput.isCompressed(file) && this.files.size() == 1) {
+					// Nothing to keep in order, the lines go to the sink while
+					// the file is read
+					this.searchCompressed(file, prefix, this.sink);
+					this.progress.addScannedBytes(file.length());
+					continue;
+				}
+				if (CompressedInput.isCompressed(file)) {
+					// A compressed stream cannot be split, every file is
+					// decompressed by its own thread
+					work.add(new CompressedWork(file, prefix));
+					continue;
+				}
+
+				final FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+				channels.add(channel);
+
+				fileEnd = channel.size();
+				if (this.isIncremental) {
+					fileEnd = this.findLastLineEnd(channel, Math.min(this.startOffset, fileEnd), fileEnd);
+				}
+
+				// The time window and the index give the only ranges of the
+				// file that may match
+				long rangeStart = Math.min(this.startOffset, fileEnd);
+				long rangeEnd = fileEnd;
+				final long[] window = this.timeWindow == null ? null : this.timeWindow.getRange(channel, fileEnd);
+				if (window != null) {
+					rangeStart = Math.max(rangeStart, window[0]);
+					rangeEnd = Math.min(rangeEnd, window[1]);
+				}
+				List<long[]> candidates = null;
+				if (this.index != null) {
+					candidates = this.index.getCandidateRanges(file, trigrams, fileEnd);
+				}
+				if (candidates == null) {
+					candidates = Collections.singletonList(new long[] { rangeStart, rangeEnd });
+				}
+				final List<long[]> ranges = new ArrayList<long[]>();
+				for (final long[] candidate : candidates) {
+					final long start = Math.max(candidate[0], rangeStart);
+					final long end = Math.min(candidate[1], rangeEnd);
+					if (start < end) {
+						ranges.add(new long[] { start, end });
+					}
+				}
+
+				// What is not searched counts as done, the progress goes
+				// through the whole file
+				long skipped = channel.size();
+				for (final long[] range : ranges) {
+					skipped -= range[1] - range[0];
+				}
+				this.progress.addScannedBytes(skipped);
+
+				for (final long[] range : ranges) {
+					final List<Long> boundaries = this.findChunkBoundaries(channel, range[0], range[1]);
+					for (int i = 1; i < boundaries.size(); i++) {
+						work.add(new ChunkWork(channel, boundaries.get(i - 1), boundaries.get(i), prefix));
+					}
+				}
+			}
+
+			// Chunks and compressed files are searched in parallel but
+			// delivered in order. Only a few are searched ahead of the sink,
+			// the matches of a whole file never wait in memory for a slow
+			// sink
+			final int maxStarted = 2 * pool.getParallelism();
+			int next = 0;
+			while (next < work.size() || !started.isEmpty()) {
+				while (next < work.size() && started.size() < maxStarted) {
+					final Work part = work.get(next++);
+					part.start();
+					started.add(part);
+				}
+				if (this.isCancelled) {
+					break;
+				}
+				started.peek().deliver(this.sink);
+				started.poll();
+			}
+
+			if (this.isIncremental && !this.isCancelled) {
+				this.endOffset = Math.max(fileEnd, this.startOffset);
+			}
+		} catch (final Exception e) {
+			this.failure = e;
+		} finally {
+			for (final Work part : started) {
+				part.cancel();
+			}
+			for (final FileChannel channel : channels) {
+				try {
+					channel.close();
+				} catch (final IOException e) {
+					e.printStackTrace();
+				}
+			}
+			this.sink.close();
+		}
+	}
+
+	/**
+	 * Hands the matching lines of the file to the output a batch at a time.
+	 */
+	private void searchCompressed(File file, String prefix, LineSink output) throws IOException {
+		final List<String> matches = new ArrayList<String>();
+		final CharsetDecoder decoder = UTF8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final Reader reader = new InputStreamReader(CompressedInput.open(file), decoder);
+		try {
+			final Matcher matcher = this.query.newMatcher();
+			// A stream cannot be searched by offset, its lines are filtered
+			// by time and the reading stops after the window
+			final TimeWindow.LineFilter filter = this.timeWindow == null ? null : this.timeWindow.newLineFilter();
+			final char[] buffer = new char[64 * 1024];
+			final StringBuilder line = new StringBuilder();
+			boolean isPastEnd = false;
+			int read;
+			while (!this.isCancelled && !isPastEnd && (read = reader.read(buffer)) >= 0) {
+				int lineStart = 0;
+				for (int i = 0; i < read && !isPastEnd; i++) {
+					if (buffer[i] != '\n') {
+						continue;
+					}
+
+					line.append(buffer, lineStart, i - lineStart);
+					if ((filter == null || filter.accept(line)) && this.query.matches(matcher, line)) {
+						matches.add(prefix + line.toString());
+					}
+					isPastEnd = filter != null && filter.isPastEnd();
+					line.setLength(0);
+					lineStart = i + 1;
+				}
+				if (!isPastEnd) {
+					line.append(buffer, lineStart, read - lineStart);
+				}
+				if (matches.size() >= COMPRESSED_BATCH_SIZE) {
+					output.append(new ArrayList<String>(matches));
+					matches.clear();
+				}
+			}
+
+			if (!this.isCancelled && line.length() > 0 && (filter == null || filter.accept(line))
+					&& this.query.matches(matcher, line)) {
+				matches.add(prefix + line.toString());
+			}
+			if (!matches.isEmpty()) {
+				output.append(matches);
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Searches the lines by the required literal of the query: only the lines
+	 * that contain it are decoded, then matched by the query if the literal
+	 * is not enough to tell.
+	 */
+	private List<String> scanLines(ByteBuffer bytes, String prefix) {
+		final List<String> matches = new ArrayList<String>();
+		final Matcher matcher = this.scanner.isExact() ? null : this.query.newMatcher();
+		final ByteBuffer line = bytes.duplicate();
+		final int length = bytes.limit();
+		int position = 0;
+		while (position < length && !this.isCancelled) {
+			final int hit = this.scanner.indexOf(bytes, position, length);
+			if (hit < 0) {
+				break;
+			}
+
+			// The position is always at a line start
+			int lineStart = hit;
+			while (lineStart > position && bytes.get(lineStart - 1) != '\n') {
+				lineStart--;
+			}
+			int lineEnd = hit + 1;
+			while (lineEnd < length && bytes.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+
+			final byte[] lineBytes = new byte[lineEnd - lineStart];
+			line.limit(lineEnd).position(lineStart);
+			line.get(lineBytes);
+			final String text = new String(lineBytes, UTF8);
+			if (matcher == null || this.query.matches(matcher, text)) {
+				matches.add(prefix + text);
+			}
+			position = lineEnd + 1;
+		}
+
+		return matches;
+	}
+
+	private List<String> searchChunk(FileChannel channel, long start, long end, String prefix) throws IOException {
+		final List<String> matches = this.searchLines(channel, start, end, prefix);
+		this.progress.addScannedBytes(end - start);
+		return matches;
+	}
+
+	private List<String> searchLines(FileChannel channel, long start, long end, String prefix) throws IOException {
+		final List<String> matches = new ArrayList<String>();
+		if (this.isCancelled || end <= start) {
+			return matches;
+		}
+
+		final ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		if (this.scanner != null) {
+			try {
+				return this.scanLines(bytes, prefix);
+			} finally {
+				MappedBuffers.unmap(bytes);
+			}
+		}
+
+		final CharsetDecoder decoder = UTF8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final CharBuffer chars = decoder.decode(bytes);
+		// The decoded text is all is needed, do not keep the mapping around
+		MappedBuffers.unmap(bytes);
+		final Matcher matcher = this.query.newMatcher();
+
+		final int length = chars.length();
+		int lineStart = 0;
+		int linesSinceCheck = 0;
+		while (lineStart < length) {
+			int lineEnd = lineStart;
+			while (lineEnd < length && chars.get(lineEnd) != '\n') {
+				lineEnd++;
+			}
+
+			final CharSequence line = chars.subSequence(lineStart, lineEnd);
+			if (this.query.matches(matcher, line)) {
+				matches.add(prefix + line.toString());
+			}
+			lineStart = lineEnd + 1;
+
+			if (++linesSinceCheck == 1024) {
+				linesSinceCheck = 0;
+				if (this.isCancelled) {
+					break;
+				}
+			}
+		}
+
+		return matches;
+	}
+
+	/**
+	 * Lets the search skip the parts of the indexed files that cannot match.
+	 */
+	public void setIndex(TrigramIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Shares the counters of a search made by more engines, the engine adds
+	 * the bytes it scans, the total and the matches are up to the caller.
+	 */
+	public void setProgress(SearchProgress progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * Searches only the lines of the time window, the files have to be
+	 * written in time order.
+	 */
+	public void setTimeWindow(TimeWindow timeWindow) {
+		this.timeWindow = timeWindow;
+	}
+}
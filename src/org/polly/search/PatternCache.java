@@ -0,0 +1,56 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of compiled patterns keyed by expression and flags, so
+ * repeating a search does not compile the same expression again.
+ */
+public class PatternCache {
+	private static final int CAPACITY = 64;
+
+	private static final Map<String, Pattern> cache = new LinkedHashMap<String, Pattern>(CAPACITY, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+			return this.size() > CAPACITY;
+		}
+	};
+
+	public static Pattern compile(String regex, int flags) {
+		final String key = flags + ":" + regex;
+		synchronized (cache) {
+			Pattern pattern = cache.get(key);
+			if (pattern == null) {
+				pattern = Pattern.compile(regex, flags);
+				cache.put(key, pattern);
+			}
+			return pattern;
+		}
+	}
+
+	private PatternCache() {
+
+	}
+}
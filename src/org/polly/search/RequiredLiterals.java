@@ -0,0 +1,235 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the literal strings that every match of a regular expression has to
+ * contain, so the text that does not contain them can be skipped without
+ * running the expression. The analysis is conservative: only literals outside
+ * groups and not made optional by a quantifier are returned, and nothing is
+ * returned for an expression with a top level alternation or inline flags.
+ */
+public class RequiredLiterals {
+	private static void flush(StringBuilder current, List<String> literals) {
+		if (current.length() > 0) {
+			literals.add(current.toString());
+			current.setLength(0);
+		}
+	}
+
+	public static List<String> of(String regex) {
+		final List<String> literals = new ArrayList<String>();
+		final StringBuilder current = new StringBuilder();
+		boolean isLastAtomLiteral = false;
+
+		int i = 0;
+		while (i < regex.length()) {
+			final char c = regex.charAt(i);
+			switch (c) {
+			case '|':
+			case ')':
+				return Collections.emptyList();
+
+			case '\\':
+				if (i + 1 >= regex.length()) {
+					return Collections.emptyList();
+				}
+				final char escaped = regex.charAt(i + 1);
+				if (escaped == 'Q') {
+					int end = regex.indexOf("\\E", i + 2);
+					if (end < 0) {
+						end = regex.length();
+					}
+					current.append(regex, i + 2, end);
+					// A quantifier after \E applies to the last quoted char
+					isLastAtomLiteral = end > i + 2;
+					i = Math.min(end + 2, regex.length());
+					continue;
+				}
+				if (!Character.isLetterOrDigit(escaped)) {
+					current.append(escaped);
+					isLastAtomLiteral = true;
+					i += 2;
+					continue;
+				}
+				flush(current, literals);
+				isLastAtomLiteral = false;
+				i = skipEscape(regex, i);
+				continue;
+
+			case '[':
+				flush(current, literals);
+				isLastAtomLiteral = false;
+				i = skipClass(regex, i);
+				continue;
+
+			case '(':
+				if (regex.startsWith("(?", i) && !regex.startsWith("(?:", i)) {
+					// Inline flags and look arounds change what a literal means
+					return Collections.emptyList();
+				}
+				flush(current, literals);
+				isLastAtomLiteral = false;
+				i = skipGroup(regex, i);
+				if (i < 0) {
+					return Collections.emptyList();
+				}
+				continue;
+
+			case '*':
+			case '?':
+			case '{':
+				// The previous atom may be missing
+				if (isLastAtomLiteral && current.length() > 0) {
+					current.setLength(current.length() - 1);
+				}
+				flush(current, literals);
+				isLastAtomLiteral = false;
+				if (c == '{') {
+					final int end = regex.indexOf('}', i);
+					i = end < 0 ? regex.length() : end + 1;
+				} else {
+					i++;
+				}
+				continue;
+
+			case '+':
+				// The previous atom is there at least once
+				flush(current, literals);
+				isLastAtomLiteral = false;
+				i++;
+				continue;
+
+			case '.':
+			case '^':
+			case '$':
+				flush(current, literals);
+				isLastAtomLiteral = false;
+				i++;
+				continue;
+
+			default:
+				current.append(c);
+				isLastAtomLiteral = true;
+				i++;
+			}
+		}
+		flush(current, literals);
+
+		return literals;
+	}
+
+	private static int skipClass(String regex, int start) {
+		int i = start + 1;
+		if (i < regex.length() && regex.charAt(i) == '^') {
+			i++;
+		}
+		if (i < regex.length() && regex.charAt(i) == ']') {
+			i++;
+		}
+
+		while (i < regex.length()) {
+			final char c = regex.charAt(i);
+			if (c == '\\') {
+				i += 2;
+			} else if (c == '[') {
+				i = skipClass(regex, i);
+			} else if (c == ']') {
+				return i + 1;
+			} else {
+				i++;
+			}
+		}
+
+		return regex.length();
+	}
+
+	private static int skipEscape(String regex, int start) {
+		final char escaped = regex.charAt(start + 1);
+		int i = start + 2;
+		switch (escaped) {
+		case 'p':
+		case 'P':
+		case 'x':
+		case 'N':
+			if (i < regex.length() && regex.charAt(i) == '{') {
+				final int end = regex.indexOf('}', i);
+				return end < 0 ? regex.length() : end + 1;
+			}
+			return Math.min(regex.length(), i + (escaped == 'x' ? 2 : 1));
+		case 'u':
+			return Math.min(regex.length(), i + 4);
+		case 'c':
+			return Math.min(regex.length(), i + 1);
+		case 'k':
+			final int end = regex.indexOf('>', i);
+			return end < 0 ? regex.length() : end + 1;
+		case '0':
+			while (i < regex.length() && i < start + 5 && regex.charAt(i) >= '0' && regex.charAt(i) <= '7') {
+				i++;
+			}
+			return i;
+		default:
+			return i;
+		}
+	}
+
+	/**
+	 * Returns the index after the group closing parenthesis, or -1 when the
+	 * group is not closed.
+	 */
+	private static int skipGroup(String regex, int start) {
+		int depth = 0;
+		int i = start;
+		while (i < regex.length()) {
+			final char c = regex.charAt(i);
+			if (c == '\\') {
+				if (regex.startsWith("\\Q", i)) {
+					final int end = regex.indexOf("\\E", i + 2);
+					i = end < 0 ? regex.length() : end + 2;
+				} else {
+					i += 2;
+				}
+			} else if (c == '[') {
+				i = skipClass(regex, i);
+			} else if (c == '(') {
+				depth++;
+				i++;
+			} else if (c == ')') {
+				depth--;
+				i++;
+				if (depth == 0) {
+					return i;
+				}
+			} else {
+				i++;
+			}
+		}
+
+		return -1;
+	}
+
+	private RequiredLiterals() {
+
+	}
+}
@@ -0,0 +1,208 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.polly.output.LineSink;
+import org.polly.output.ResultCache;
+
+/**
+ * Remembers how far a file has been searched for a query and the lines
+ * matched so far, so the next search of the same query only reads what was
+ * appended to the file since then. The checkpoint starts again from the
+ * beginning when the file is rotated (its inode changes) or truncated.
+ */
+public class SearchCheckpoint {
+	private static final String offsetKey = "offset";
+	private static final String inodeKey = "inode";
+	private static final String matchesLengthKey = "matchesLength";
+	private static final int batchSize = 1000;
+
+	private static String getName(File file, SearchQuery query) throws IOException {
+		final String key = query.getText() + "\n" + query.isIgnoreCase() + query.isWholeWord() + query.isInvert()
+				+ query.isFixed() + "\n" + file.getAbsolutePath();
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return ResultCache.toHex(digest.digest(key.getBytes(StandardCharsets.UTF_8)));
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * Loads the checkpoint of the query on the file, an empty one if the
+	 * file was never searched for the query or was rotated since then.
+	 */
+	public static SearchCheckpoint load(File directory, File file, SearchQuery query) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Unable to create " + directory);
+		}
+
+		final String name = getName(file, query);
+		final SearchCheckpoint checkpoint = new SearchCheckpoint(new File(directory, name + ".properties"),
+				new File(directory, name + ".matches"));
+
+		final Path path = file.toPath();
+		final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		checkpoint.inode = String.valueOf(ResultCache.getInode(path, attributes));
+
+		if (checkpoint.stateFile.isFile()) {
+			final Properties state = new Properties();
+			final InputStream in = new FileInputStream(checkpoint.stateFile);
+			try {
+				state.load(in);
+			} finally {
+				in.close();
+			}
+
+			final long offset = Long.parseLong(state.getProperty(offsetKey, "0"));
+			if (checkpoint.inode.equals(state.getProperty(inodeKey)) && offset <= attributes.size()) {
+				checkpoint.offset = offset;
+				checkpoint.matchesLength = Long.parseLong(state.getProperty(matchesLengthKey, "0"));
+			}
+		}
+
+		// Drop the matches written by a search that did not complete
+		final RandomAccessFile matches = new RandomAccessFile(checkpoint.matchesFile, "rw");
+		try {
+			matches.setLength(Math.min(matches.length(), checkpoint.matchesLength));
+			checkpoint.matchesLength = matches.length();
+		} finally {
+			matches.close();
+		}
+
+		return checkpoint;
+	}
+
+	private final File stateFile;
+	private final File matchesFile;
+	private String inode = "";
+	private long offset = 0;
+	private long matchesLength = 0;
+	private OutputStream matchesOutput = null;
+
+	private SearchCheckpoint(File stateFile, File matchesFile) {
+		this.stateFile = stateFile;
+		this.matchesFile = matchesFile;
+	}
+
+	/**
+	 * Adds lines matched after the checkpoint offset, they are kept only if
+	 * the checkpoint is then saved.
+	 */
+	public void append(List<String> lines) throws IOException {
+		if (this.matchesOutput == null) {
+			this.matchesOutput = new BufferedOutputStream(new FileOutputStream(this.matchesFile, true));
+		}
+
+		for (final String line : lines) {
+			this.matchesOutput.write(line.getBytes(StandardCharsets.UTF_8));
+			this.matchesOutput.write('\n');
+		}
+	}
+
+	/**
+	 * Forgets the lines appended since the checkpoint was loaded.
+	 */
+	public void close() throws IOException {
+		if (this.matchesOutput != null) {
+			this.matchesOutput.close();
+			this.matchesOutput = null;
+		}
+	}
+
+	public long getOffset() {
+		return this.offset;
+	}
+
+	/**
+	 * Sends the lines matched up to the checkpoint offset to the sink.
+	 */
+	public void readMatches(LineSink sink) throws IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(this.matchesFile));
+		try {
+			// Lines may contain a \r, only \n ends a line
+			final ByteArrayOutputStream line = new ByteArrayOutputStream();
+			List<String> lines = new ArrayList<String>(batchSize);
+			long remaining = this.matchesLength;
+			int b;
+			while (remaining > 0 && (b = in.read()) >= 0) {
+				remaining--;
+				if (b != '\n') {
+					line.write(b);
+					continue;
+				}
+
+				lines.add(new String(line.toByteArray(), StandardCharsets.UTF_8));
+				line.reset();
+				if (lines.size() == batchSize) {
+					sink.append(lines);
+					lines = new ArrayList<String>(batchSize);
+				}
+			}
+
+			if (!lines.isEmpty()) {
+				sink.append(lines);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Keeps the lines appended so far and moves the checkpoint to the given
+	 * offset.
+	 */
+	public void save(long offset) throws IOException {
+		this.close();
+		this.offset = offset;
+		this.matchesLength = this.matchesFile.length();
+
+		final Properties state = new Properties();
+		state.setProperty(offsetKey, String.valueOf(this.offset));
+		state.setProperty(inodeKey, this.inode);
+		state.setProperty(matchesLengthKey, String.valueOf(this.matchesLength));
+
+		final OutputStream out = new FileOutputStream(this.stateFile);
+		try {
+			state.store(out, "GrepUI search checkpoint");
+		} finally {
+			out.close();
+		}
+	}
+}
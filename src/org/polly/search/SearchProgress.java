@@ -0,0 +1,58 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a running search, written by the search threads and read by
+ * whoever shows the progress, at its own pace.
+ */
+public class SearchProgress {
+	private final AtomicLong scannedBytes = new AtomicLong();
+	private final AtomicLong totalBytes = new AtomicLong();
+	private final AtomicLong matchCount = new AtomicLong();
+
+	public void addMatches(long count) {
+		this.matchCount.addAndGet(count);
+	}
+
+	/**
+	 * Bytes searched, or skipped because they cannot match.
+	 */
+	public void addScannedBytes(long count) {
+		this.scannedBytes.addAndGet(count);
+	}
+
+	public void addTotalBytes(long count) {
+		this.totalBytes.addAndGet(count);
+	}
+
+	public long getMatchCount() {
+		return this.matchCount.get();
+	}
+
+	public long getScannedBytes() {
+		return this.scannedBytes.get();
+	}
+
+	public long getTotalBytes() {
+		return this.totalBytes.get();
+	}
+}
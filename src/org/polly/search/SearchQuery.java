@@ -0,0 +1,123 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The pattern to search plus the subset of grep options understood by the
+ * internal search engines: -i (ignore case), -w (whole word), -v (invert
+ * match) and -F (fixed string). Without -F the pattern is a Java regular
+ * expression. Other options are ignored.
+ */
+public class SearchQuery {
+	public static SearchQuery parse(String pattern, String grepOptions) {
+		boolean isIgnoreCase = false;
+		boolean isWholeWord = false;
+		boolean isInvert = false;
+		boolean isFixed = false;
+
+		for (final String option : grepOptions.trim().split("\\s+")) {
+			if (!option.startsWith("-") || option.startsWith("--")) {
+				continue;
+			}
+			isIgnoreCase |= option.indexOf('i') > 0;
+			isWholeWord |= option.indexOf('w') > 0;
+			isInvert |= option.indexOf('v') > 0;
+			isFixed |= option.indexOf('F') > 0;
+		}
+
+		return new SearchQuery(pattern, isIgnoreCase, isWholeWord, isInvert, isFixed);
+	}
+
+	private final String text;
+	private final boolean isIgnoreCase;
+	private final boolean isWholeWord;
+	private final boolean isInvert;
+	private final boolean isFixed;
+	private final Pattern pattern;
+
+	public SearchQuery(String text, boolean isIgnoreCase, boolean isWholeWord, boolean isInvert, boolean isFixed) {
+		this.text = text;
+		this.isIgnoreCase = isIgnoreCase;
+		this.isWholeWord = isWholeWord;
+		this.isInvert = isInvert;
+		this.isFixed = isFixed;
+
+		String regex = isFixed ? Pattern.quote(text) : text;
+		if (isWholeWord) {
+			regex = "\\b(?:" + regex + ")\\b";
+		}
+		this.pattern = PatternCache.compile(regex,
+				isIgnoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0);
+	}
+
+	public Pattern getPattern() {
+		return this.pattern;
+	}
+
+	/**
+	 * Returns strings that every matching line contains, an empty list when
+	 * nothing is known about the matching lines.
+	 */
+	public List<String> getRequiredLiterals() {
+		if (this.isInvert) {
+			return Collections.emptyList();
+		}
+		if (this.isFixed) {
+			return Collections.singletonList(this.text);
+		}
+		return RequiredLiterals.of(this.text);
+	}
+
+	public String getText() {
+		return this.text;
+	}
+
+	public boolean isFixed() {
+		return this.isFixed;
+	}
+
+	public boolean isIgnoreCase() {
+		return this.isIgnoreCase;
+	}
+
+	public boolean isInvert() {
+		return this.isInvert;
+	}
+
+	public boolean isWholeWord() {
+		return this.isWholeWord;
+	}
+
+	/**
+	 * The matcher is not thread safe, every search thread has to own its
+	 * matcher.
+	 */
+	public boolean matches(Matcher matcher, CharSequence line) {
+		return matcher.reset(line).find() != this.isInvert;
+	}
+
+	public Matcher newMatcher() {
+		return this.pattern.matcher("");
+	}
+}
@@ -0,0 +1,324 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.polly.index.TrigramIndex;
+import org.polly.output.LineSink;
+import org.polly.structured.LayoutLineParser;
+import org.polly.structured.LogRecord;
+
+/**
+ * Searches every file on its own and merges the matches of all the files by
+ * timestamp, as one log written by all the nodes. Each file feeds a bounded
+ * queue, so a file far ahead of the others waits instead of filling the
+ * memory; the heads of the queues are kept in a heap ordered by time. Every
+ * line starts with the name of its file, padded to the same width.
+ *
+ * The files have to be written in time order. A matching line without a
+ * timestamp keeps the time of the line before it in the same file.
+ */
+public class TimeOrderedMerge implements Runnable {
+	/**
+	 * The next line of a file and its time, the files are compared by the
+	 * time of their next line.
+	 */
+	private static class Head {
+		private final int source;
+		private final String line;
+		private final long timestamp;
+
+		Head(int source, String line, long timestamp) {
+			this.source = source;
+			this.line = line;
+			this.timestamp = timestamp;
+		}
+	}
+
+	/**
+	 * The search of a file, feeding the queue of the file and parsing the
+	 * timestamps of its lines.
+	 */
+	private class Source implements Runnable {
+		private final ParallelSearchEngine engine;
+		private final BlockingQueue<String> queue = new ArrayBlockingQueue<String>(QUEUE_CAPACITY);
+		private final LogRecord record = new LogRecord();
+		private LayoutLineParser parser = null;
+		private int detectionAttempts = 0;
+		private long lastTimestamp = Long.MIN_VALUE;
+
+		Source(File file) {
+			this.engine = new ParallelSearchEngine(Collections.singletonList(file), TimeOrderedMerge.this.query,
+					new LineSink() {
+						@Override
+						public void append(List<String> lines) {
+							for (final String line : lines) {
+								Source.this.put(line);
+							}
+						}
+
+						@Override
+						public void close() {
+							Source.this.put(END);
+						}
+					});
+			this.engine.setIndex(TimeOrderedMerge.this.index);
+			this.engine.setProgress(TimeOrderedMerge.this.progress);
+			this.engine.setTimeWindow(TimeOrderedMerge.this.timeWindow);
+		}
+
+		long getTimestamp(String line) {
+			if (this.parser == null && this.detectionAttempts < MAX_DETECTION_ATTEMPTS) {
+				this.detectionAttempts++;
+				this.parser = LayoutLineParser.detect(line, TimeOrderedMerge.this.timestampFormat);
+			}
+
+			if (this.parser != null) {
+				final int length = Math.min(line.length(), MAX_HEAD_LENGTH);
+				if (this.parser.parse(line.substring(0, length), this.record)) {
+					this.lastTimestamp = this.record.getTimestamp();
+				}
+			}
+			return this.lastTimestamp;
+		}
+
+		private void put(String line) {
+			try {
+				while (!TimeOrderedMerge.this.isCancelled && !this.queue.offer(line, 100, TimeUnit.MILLISECONDS)) {
+					// The merge is behind, wait for it
+				}
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				this.engine.cancel();
+			}
+		}
+
+		@Override
+		public void run() {
+			this.engine.run();
+		}
+
+		/**
+		 * Returns the next line of the file, END once it is over, null when
+		 * nothing is ready before the timeout.
+		 */
+		String take(long timeout) throws InterruptedException {
+			final String line = this.queue.poll();
+			if (line != null || timeout == 0) {
+				return line;
+			}
+			return this.queue.poll(timeout, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private static final String END = new String();
+	private static final int QUEUE_CAPACITY = 4096;
+	private static final int BATCH_SIZE = 1000;
+	private static final int MAX_DETECTION_ATTEMPTS = 100;
+	private static final int MAX_HEAD_LENGTH = 128;
+
+	/**
+	 * Returns the name shown for every file: its name, or its parent
+	 * directory and its name when two files have the same name.
+	 */
+	private static List<String> getLabels(List<File> files) {
+		final Set<String> names = new HashSet<String>();
+		boolean isAmbiguous = false;
+		for (final File file : files) {
+			isAmbiguous |= !names.add(file.getName());
+		}
+
+		final List<String> labels = new ArrayList<String>();
+		int width = 0;
+		for (final File file : files) {
+			final File parent = file.getAbsoluteFile().getParentFile();
+			final String label = isAmbiguous && parent != null ? parent.getName() + File.separator + file.getName()
+					: file.getName();
+			labels.add(label);
+			width = Math.max(width, label.length());
+		}
+
+		for (int i = 0; i < labels.size(); i++) {
+			labels.set(i, String.format("%-" + width + "s  ", labels.get(i)));
+		}
+		return labels;
+	}
+
+	private final List<File> files;
+	private final SearchQuery query;
+	private final String timestampFormat;
+	private final LineSink sink;
+	private final List<Source> sources = new CopyOnWriteArrayList<Source>();
+	private volatile boolean isCancelled = false;
+	private volatile Exception failure = null;
+	private TrigramIndex index = null;
+	private SearchProgress progress = new SearchProgress();
+	private TimeWindow timeWindow = null;
+
+	/**
+	 * The timestamps are read in the given format, or in one of the common
+	 * formats when the lines of a file do not fit it.
+	 */
+	public TimeOrderedMerge(List<File> files, SearchQuery query, String timestampFormat, LineSink sink) {
+		this.files = files;
+		this.query = query;
+		this.timestampFormat = timestampFormat;
+		this.sink = sink;
+	}
+
+	public void cancel() {
+		this.isCancelled = true;
+		for (final Source source : this.sources) {
+			source.engine.cancel();
+		}
+	}
+
+	private void flush(List<String> batch) {
+		if (!batch.isEmpty()) {
+			this.sink.append(new ArrayList<String>(batch));
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Returns the error of the first file whose search failed, or null. The
+	 * merge stops at the first error.
+	 */
+	public Exception getFailure() {
+		return this.failure;
+	}
+
+	/**
+	 * Returns the head of the next line of the source, null once the source
+	 * is over. The batch is handed to the sink before waiting for a slow
+	 * source, so the lines already merged are shown meanwhile.
+	 */
+	private Head next(int source, List<String> batch) throws InterruptedException {
+		final Source input = this.sources.get(source);
+		String line = input.take(0);
+		if (line == null) {
+			this.flush(batch);
+			while (!this.isCancelled && (line = input.take(100)) == null) {
+				// The search of the file is still going
+			}
+		}
+
+		if (line == END && input.engine.getFailure() != null) {
+			// The merge would go on without the lines of the file
+			this.failure = input.engine.getFailure();
+			this.cancel();
+		}
+		if (line == null || line == END) {
+			return null;
+		}
+		return new Head(source, line, input.getTimestamp(line));
+	}
+
+	@Override
+	public void run() {
+		final List<String> labels = getLabels(this.files);
+		final List<Thread> threads = new ArrayList<Thread>();
+		try {
+			for (int i = 0; i < this.files.size(); i++) {
+				final Source source = new Source(this.files.get(i));
+				// Added before the check, a cancel either sees the source
+				// or is seen here
+				this.sources.add(source);
+				if (this.isCancelled) {
+					return;
+				}
+				final Thread thread = new Thread(source, "GrepUI merge of " + this.files.get(i).getName());
+				thread.setDaemon(true);
+				threads.add(thread);
+			}
+			for (final Thread thread : threads) {
+				thread.start();
+			}
+
+			// The oldest line first, the first file first on the same time
+			final PriorityQueue<Head> heads = new PriorityQueue<Head>(Math.max(1, this.files.size()),
+					new Comparator<Head>() {
+						@Override
+						public int compare(Head a, Head b) {
+							final int comparison = Long.compare(a.timestamp, b.timestamp);
+							return comparison != 0 ? comparison : Integer.compare(a.source, b.source);
+						}
+					});
+
+			final List<String> batch = new ArrayList<String>(BATCH_SIZE);
+			for (int i = 0; i < this.sources.size(); i++) {
+				final Head head = this.next(i, batch);
+				if (head != null) {
+					heads.add(head);
+				}
+			}
+
+			while (!heads.isEmpty() && !this.isCancelled) {
+				final Head head = heads.poll();
+				batch.add(labels.get(head.source) + head.line);
+				if (batch.size() >= BATCH_SIZE) {
+					this.flush(batch);
+				}
+
+				final Head next = this.next(head.source, batch);
+				if (next != null) {
+					heads.add(next);
+				}
+			}
+			this.flush(batch);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			this.cancel();
+			for (final Thread thread : threads) {
+				try {
+					thread.join();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			this.sink.close();
+		}
+	}
+
+	public void setIndex(TrigramIndex index) {
+		this.index = index;
+	}
+
+	public void setProgress(SearchProgress progress) {
+		this.progress = progress;
+	}
+
+	public void setTimeWindow(TimeWindow timeWindow) {
+		this.timeWindow = timeWindow;
+	}
+}
@@ -0,0 +1,322 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+import org.polly.structured.LayoutLineParser;
+import org.polly.structured.LogRecord;
+
+/**
+ * Narrows the search of log files written in time order to the lines between
+ * two times. The timestamp format of every file is detected on its first
+ * line, then the first and the last line of the window are found by binary
+ * search on byte offsets. Every step reads the lines after its offset up to
+ * the first timestamp, at most a few MB where there is none, so the bytes
+ * read grow with the log of the file size.
+ *
+ * A bound is either a timestamp in the configured format or a time of the
+ * day, like 14:02, taken on the day of the first line of each file. The
+ * lines without a timestamp, like the ones of a stack trace, go with the
+ * line before them.
+ */
+public class TimeWindow {
+	/**
+	 * Filters the lines of a stream that cannot be searched by offset, like
+	 * a compressed file, and tells when the rest of the stream is after the
+	 * window.
+	 */
+	public class LineFilter {
+		private LayoutLineParser parser = null;
+		private long[] bounds = null;
+		private boolean isInside = false;
+		private boolean isPastEnd = false;
+
+		public boolean accept(CharSequence line) {
+			if (this.bounds == null) {
+				this.parser = LayoutLineParser.detect(line, TimeWindow.this.timestampFormat);
+				if (this.parser == null) {
+					// Nothing is known about the time of the lines
+					this.bounds = new long[] { Long.MIN_VALUE, Long.MAX_VALUE };
+					this.isInside = true;
+					return true;
+				}
+			}
+
+			final long timestamp = this.parser == null ? Long.MIN_VALUE
+					: TimeWindow.getTimestamp(this.parser, line);
+			if (timestamp != Long.MIN_VALUE) {
+				if (this.bounds == null) {
+					this.bounds = TimeWindow.this.resolve(timestamp);
+				}
+				this.isInside = timestamp >= this.bounds[0] && timestamp <= this.bounds[1];
+				this.isPastEnd = timestamp > this.bounds[1];
+			}
+			return this.isInside;
+		}
+
+		public boolean isPastEnd() {
+			return this.isPastEnd;
+		}
+	}
+
+	/**
+	 * Reads the lines of a file through one buffer, the lines walked forward
+	 * from a probed offset are read once.
+	 */
+	private static class LineReader {
+		private final FileChannel channel;
+		private final long size;
+		private final ByteBuffer buffer = ByteBuffer.allocate(PROBE_BUFFER_SIZE);
+		private long bufferOffset = 0;
+		private int bufferLength = 0;
+
+		LineReader(FileChannel channel, long size) {
+			this.channel = channel;
+			this.size = size;
+		}
+
+		private void fill(long offset) throws IOException {
+			this.buffer.clear();
+			while (this.buffer.hasRemaining() && offset + this.buffer.position() < this.size
+					&& this.channel.read(this.buffer, offset + this.buffer.position()) > 0) {
+				// Read up to the buffer size or the end of the file
+			}
+			this.bufferOffset = offset;
+			this.bufferLength = this.buffer.position();
+		}
+
+		/**
+		 * Returns the start of the line at the offset, at most its first
+		 * bytes that hold the timestamp, or null at the end of the file.
+		 */
+		String readHead(long lineStart) throws IOException {
+			if (lineStart >= this.size) {
+				return null;
+			}
+
+			final long headEnd = Math.min(this.size, lineStart + MAX_HEAD_LENGTH * 4);
+			if (lineStart < this.bufferOffset || headEnd > this.bufferOffset + this.bufferLength) {
+				this.fill(lineStart);
+			}
+			final int start = (int) (lineStart - this.bufferOffset);
+			final int limit = (int) Math.min(headEnd - this.bufferOffset, this.bufferLength);
+			int end = start;
+			while (end < limit && this.buffer.get(end) != '\n') {
+				end++;
+			}
+			return new String(this.buffer.array(), start, end - start, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Returns the offset just after the new line that ends the line
+		 * holding the offset, or the size.
+		 */
+		long skipLine(long offset) throws IOException {
+			if (offset < this.bufferOffset || offset >= this.bufferOffset + this.bufferLength) {
+				this.fill(offset);
+			}
+			int i = (int) (offset - this.bufferOffset);
+			while (this.bufferLength > 0) {
+				for (; i < this.bufferLength; i++) {
+					if (this.buffer.get(i) == '\n') {
+						return this.bufferOffset + i + 1;
+					}
+				}
+				this.fill(this.bufferOffset + this.bufferLength);
+				i = 0;
+			}
+			return this.size;
+		}
+	}
+
+	private static final int PROBE_BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_PROBE_SIZE = 4 * 1024 * 1024;
+	private static final int MAX_HEAD_LENGTH = 128;
+
+	/**
+	 * Returns the timestamp at the start of the line, or Long.MIN_VALUE.
+	 */
+	private static long getTimestamp(LayoutLineParser parser, CharSequence line) {
+		final int length = Math.min(line.length(), MAX_HEAD_LENGTH);
+		final LogRecord record = new LogRecord();
+		if (!parser.parse(line.subSequence(0, length).toString(), record)) {
+			return Long.MIN_VALUE;
+		}
+		return record.getTimestamp();
+	}
+
+	/**
+	 * Reads the bounds of the window, an empty text leaves that side open.
+	 */
+	public static TimeWindow parse(String from, String to, String timestampFormat) {
+		final TimeWindow window = new TimeWindow(from.trim(), to.trim(), timestampFormat);
+		window.fromTime = window.parseBound(window.fromText, Long.MIN_VALUE);
+		window.fromTimeOfDay = window.parseTimeOfDay(window.fromText, window.fromTime);
+		window.toTime = window.parseBound(window.toText, Long.MAX_VALUE);
+		window.toTimeOfDay = window.parseTimeOfDay(window.toText, window.toTime);
+		return window;
+	}
+
+	private final String fromText;
+	private final String toText;
+	private final String timestampFormat;
+	private final ZoneId zone = ZoneId.systemDefault();
+	private long fromTime;
+	private LocalTime fromTimeOfDay;
+	private long toTime;
+	private LocalTime toTimeOfDay;
+
+	private TimeWindow(String fromText, String toText, String timestampFormat) {
+		this.fromText = fromText;
+		this.toText = toText;
+		this.timestampFormat = timestampFormat;
+	}
+
+	/**
+	 * Returns the offset of the first line with a timestamp that is not
+	 * before the given time, or the size when there is none. Every probe
+	 * reads only the lines just after the probed offset, a probe finding no
+	 * timestamp there takes the unknown timestamp: the latest to find the
+	 * start of the window, the earliest to find its end, so the window only
+	 * gets wider.
+	 */
+	private long findFirst(LineReader reader, long size, LayoutLineParser parser, long time, long unknownTimestamp)
+			throws IOException {
+		long low = 0;
+		long high = size;
+		while (low < high) {
+			final long middle = (low + high) >>> 1;
+			final long[] probe = this.probe(reader, middle, size, parser);
+			long timestamp = probe == null ? Long.MAX_VALUE : probe[1];
+			if (timestamp == Long.MIN_VALUE) {
+				timestamp = unknownTimestamp;
+			}
+			if (timestamp >= time) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+
+		final long[] probe = this.probe(reader, low, size, parser);
+		return probe == null ? size : probe[0];
+	}
+
+	/**
+	 * Returns the offsets of the bytes between the two times, or null when
+	 * the timestamps of the file cannot be read and the whole file has to be
+	 * searched.
+	 */
+	public long[] getRange(FileChannel channel, long size) throws IOException {
+		final LineReader reader = new LineReader(channel, size);
+		final String firstLine = reader.readHead(0);
+		final LayoutLineParser parser = firstLine == null ? null
+				: LayoutLineParser.detect(firstLine, this.timestampFormat);
+		if (parser == null) {
+			return null;
+		}
+
+		final long[] bounds = this.resolve(getTimestamp(parser, firstLine));
+		final long start = bounds[0] == Long.MIN_VALUE ? 0
+				: this.findFirst(reader, size, parser, bounds[0], Long.MAX_VALUE);
+		final long end = bounds[1] == Long.MAX_VALUE ? size
+				: this.findFirst(reader, size, parser, bounds[1] + 1, Long.MIN_VALUE);
+		return new long[] { start, Math.max(start, end) };
+	}
+
+	public LineFilter newLineFilter() {
+		return new LineFilter();
+	}
+
+	private long parseBound(String text, long openValue) {
+		if (text.isEmpty()) {
+			return openValue;
+		}
+		return new LayoutLineParser("timestamp", this.timestampFormat).parseTimestamp(text);
+	}
+
+	private LocalTime parseTimeOfDay(String text, long time) {
+		if (text.isEmpty() || time != Long.MIN_VALUE) {
+			return null;
+		}
+		try {
+			return LocalTime.parse(text);
+		} catch (final DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid time '" + text + "', expected " + this.timestampFormat
+					+ " or HH:mm[:ss]");
+		}
+	}
+
+	/**
+	 * Returns the start offset and the timestamp of the first line with a
+	 * timestamp that starts after the byte before the position, or null when
+	 * there is none up to the end of the file. When there is none close
+	 * enough the timestamp is Long.MIN_VALUE and the offset is the one of the
+	 * first line after the position.
+	 */
+	private long[] probe(LineReader reader, long position, long size, LayoutLineParser parser) throws IOException {
+		final long firstLineStart = position == 0 ? 0 : reader.skipLine(position - 1);
+		long lineStart = firstLineStart;
+		final long limit = Math.min(size, position + MAX_PROBE_SIZE);
+		while (lineStart < limit) {
+			final long timestamp = getTimestamp(parser, reader.readHead(lineStart));
+			if (timestamp != Long.MIN_VALUE) {
+				return new long[] { lineStart, timestamp };
+			}
+			lineStart = reader.skipLine(lineStart);
+		}
+		return lineStart < size ? new long[] { firstLineStart, Long.MIN_VALUE } : null;
+	}
+
+	/**
+	 * Returns the bounds of the window in epoch millis, the times of the day
+	 * taken on the day of the given timestamp.
+	 */
+	private long[] resolve(long timestamp) {
+		final LocalDate day = Instant.ofEpochMilli(timestamp).atZone(this.zone).toLocalDate();
+		long from = this.fromTime;
+		if (this.fromTimeOfDay != null) {
+			from = day.atTime(this.fromTimeOfDay).atZone(this.zone).toInstant().toEpochMilli();
+		}
+		long to = this.toTime;
+		if (this.toTimeOfDay != null) {
+			to = day.atTime(this.toTimeOfDay).atZone(this.zone).toInstant().toEpochMilli();
+			if (this.fromTimeOfDay != null && this.toTimeOfDay.isBefore(this.fromTimeOfDay)) {
+				// The window goes past midnight
+				to = day.plusDays(1).atTime(this.toTimeOfDay).atZone(this.zone).toInstant().toEpochMilli();
+			}
+		}
+		return new long[] { from, to };
+	}
+
+	@Override
+	public String toString() {
+		return "between " + (this.fromText.isEmpty() ? "start" : this.fromText) + " and "
+				+ (this.toText.isEmpty() ? "end" : this.toText);
+	}
+}
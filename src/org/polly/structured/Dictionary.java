@@ -0,0 +1,76 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.structured;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives every distinct value of a column a small id, so the column is stored
+ * as ints and compared by id.
+ */
+public class Dictionary {
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private final List<String> values = new ArrayList<String>();
+
+	public int getId(String value) {
+		Integer id = this.ids.get(value);
+		if (id == null) {
+			id = this.values.size();
+			this.ids.put(value, id);
+			this.values.add(value);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the position of every id in the alphabetical order of the
+	 * values, to sort by value comparing ints.
+	 */
+	public int[] getRanks() {
+		final Integer[] sorted = new Integer[this.values.size()];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = i;
+		}
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Dictionary.this.values.get(a).compareTo(Dictionary.this.values.get(b));
+			}
+		});
+
+		final int[] ranks = new int[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			ranks[sorted[i]] = i;
+		}
+		return ranks;
+	}
+
+	public String getValue(int id) {
+		return this.values.get(id);
+	}
+
+	public int size() {
+		return this.values.size();
+	}
+}
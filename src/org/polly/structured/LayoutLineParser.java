@@ -0,0 +1,250 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.structured;
+
+import java.text.ParsePosition;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+
+/**
+ * Parses the lines made of space separated fields in a fixed order, like
+ * "timestamp level thread logger - message". The layout names the fields:
+ * timestamp takes as many words as the timestamp format, message takes the
+ * rest of the line, any other name skips a word. Square brackets around the
+ * level and the thread are dropped.
+ */
+public class LayoutLineParser implements LogLineParser {
+	private enum Field {
+		TIMESTAMP, LEVEL, THREAD, LOGGER, MESSAGE, SKIP
+	}
+
+	private static final String[] DETECTED_FORMATS = { "yyyy-MM-dd HH:mm:ss.SSS", "yyyy-MM-dd HH:mm:ss,SSS",
+			"yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd'T'HH:mm:ss.SSS", "yyyy-MM-dd'T'HH:mm:ss.SSSXXX",
+			"yyyy-MM-dd'T'HH:mm:ssXXX", "yyyy-MM-dd'T'HH:mm:ss", "dd/MMM/yyyy:HH:mm:ss", "HH:mm:ss.SSS",
+			"HH:mm:ss" };
+	private static final int MAX_DETECTED_LENGTH = 128;
+
+	/**
+	 * Returns the value of the digits from the offset to the end of the text,
+	 * or -1 when there is something else.
+	 */
+	private static int parseDigits(String text, int offset) {
+		int value = 0;
+		for (int i = offset; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + c - '0';
+		}
+		return value;
+	}
+
+	/**
+	 * Returns a parser of the timestamp at the start of the line, the rest
+	 * of the line being the message: the given format first, then the common
+	 * ones. Null when none fits.
+	 */
+	public static LayoutLineParser detect(CharSequence line, String preferredFormat) {
+		final String head = line.subSequence(0, Math.min(line.length(), MAX_DETECTED_LENGTH)).toString();
+		final LogRecord record = new LogRecord();
+		final LayoutLineParser preferred = new LayoutLineParser("timestamp message", preferredFormat);
+		if (preferred.parse(head, record)) {
+			return preferred;
+		}
+		for (final String format : DETECTED_FORMATS) {
+			final LayoutLineParser parser = new LayoutLineParser("timestamp message", format);
+			if (parser.parse(head, record)) {
+				return parser;
+			}
+		}
+		return null;
+	}
+
+	private static String unbracket(String word) {
+		if (word.length() >= 2 && word.charAt(0) == '[' && word.charAt(word.length() - 1) == ']') {
+			return word.substring(1, word.length() - 1);
+		}
+		return word;
+	}
+
+	private final Field[] fields;
+	private final DateTimeFormatter formatter;
+	private final int timestampWords;
+	private final int fieldDigits;
+	private final long fieldMillis;
+	private final int fieldLimit;
+	private final ZoneId zone = ZoneId.systemDefault();
+	private String lastTimestampText = null;
+	private long lastTimestamp = Long.MIN_VALUE;
+
+	public LayoutLineParser(String layout, String timestampFormat) {
+		final String[] names = layout.trim().split("\\s+");
+		this.fields = new Field[names.length];
+		for (int i = 0; i < names.length; i++) {
+			try {
+				this.fields[i] = Field.valueOf(names[i].toUpperCase());
+			} catch (final IllegalArgumentException e) {
+				this.fields[i] = Field.SKIP;
+			}
+		}
+
+		this.formatter = DateTimeFormatter.ofPattern(timestampFormat);
+		this.timestampWords = timestampFormat.trim().split("\\s+").length;
+
+		// A format ending with the seconds or their fraction lets two
+		// timestamps that differ only there be compared without parsing
+		final String format = timestampFormat.trim();
+		final char last = format.isEmpty() ? ' ' : format.charAt(format.length() - 1);
+		int digits = 0;
+		while (digits < format.length() && format.charAt(format.length() - 1 - digits) == last) {
+			digits++;
+		}
+		long millis = 0;
+		int limit = 0;
+		if (last == 's' && digits == 2) {
+			millis = 1000;
+			limit = 60;
+		} else if (last == 'S' && digits <= 3) {
+			millis = digits == 1 ? 100 : digits == 2 ? 10 : 1;
+			limit = digits == 1 ? 10 : digits == 2 ? 100 : 1000;
+		}
+		this.fieldDigits = millis == 0 ? 0 : digits;
+		this.fieldMillis = millis;
+		this.fieldLimit = limit;
+	}
+
+	@Override
+	public String formatTimestamp(long timestamp) {
+		if (timestamp == Long.MIN_VALUE) {
+			return "";
+		}
+		return this.formatter.format(Instant.ofEpochMilli(timestamp).atZone(this.zone));
+	}
+
+	@Override
+	public boolean parse(String line, LogRecord record) {
+		long timestamp = Long.MIN_VALUE;
+		String level = "";
+		String thread = "";
+		String logger = "";
+		String message = "";
+
+		final int length = line.length();
+		int position = 0;
+		for (final Field field : this.fields) {
+			while (position < length && line.charAt(position) == ' ') {
+				position++;
+			}
+			if (field == Field.MESSAGE) {
+				message = line.substring(position);
+				position = length;
+				continue;
+			}
+			if (position == length) {
+				return false;
+			}
+
+			final int words = field == Field.TIMESTAMP ? this.timestampWords : 1;
+			final int start = position;
+			for (int i = 0; i < words; i++) {
+				if (i > 0) {
+					while (position < length && line.charAt(position) == ' ') {
+						position++;
+					}
+				}
+				while (position < length && line.charAt(position) != ' ') {
+					position++;
+				}
+			}
+
+			final String word = line.substring(start, position);
+			switch (field) {
+			case TIMESTAMP:
+				timestamp = this.parseTimestamp(word);
+				if (timestamp == Long.MIN_VALUE) {
+					return false;
+				}
+				break;
+			case LEVEL:
+				level = unbracket(word);
+				break;
+			case THREAD:
+				thread = unbracket(word);
+				break;
+			case LOGGER:
+				logger = word;
+				break;
+			default:
+				break;
+			}
+		}
+
+		record.set(timestamp, level, thread, logger, message);
+		return true;
+	}
+
+	@Override
+	public long parseTimestamp(String text) {
+		// Lines in a row share all of the timestamp but the last field
+		final String lastText = this.lastTimestampText;
+		if (lastText != null && this.fieldDigits > 0 && text.length() == lastText.length()) {
+			final int fieldStart = text.length() - this.fieldDigits;
+			if (text.regionMatches(0, lastText, 0, fieldStart)) {
+				// Out of range values are left to the formatter to reject
+				final int field = parseDigits(text, fieldStart);
+				if (field >= 0 && field < this.fieldLimit) {
+					return this.lastTimestamp + (field - parseDigits(lastText, fieldStart)) * this.fieldMillis;
+				}
+			}
+		}
+
+		final ParsePosition position = new ParsePosition(0);
+		if (this.formatter.parseUnresolved(text, position) == null || position.getIndex() != text.length()) {
+			return Long.MIN_VALUE;
+		}
+
+		long timestamp;
+		try {
+			final TemporalAccessor parsed = this.formatter.parse(text);
+			if (parsed.isSupported(ChronoField.INSTANT_SECONDS)) {
+				timestamp = Instant.from(parsed).toEpochMilli();
+			} else if (parsed.isSupported(ChronoField.EPOCH_DAY)) {
+				timestamp = LocalDateTime.from(parsed).atZone(this.zone).toInstant().toEpochMilli();
+			} else {
+				// Only the time of the day, the lines still sort by time
+				timestamp = LocalTime.from(parsed).atDate(LocalDate.ofEpochDay(0)).atZone(this.zone).toInstant()
+						.toEpochMilli();
+			}
+		} catch (final DateTimeException e) {
+			return Long.MIN_VALUE;
+		}
+
+		this.lastTimestampText = text;
+		this.lastTimestamp = timestamp;
+		return timestamp;
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.structured;
+
+/**
+ * Splits a log line into its fields. A parser is used by one thread at a
+ * time but can be shared by the tables built one after the other.
+ */
+public interface LogLineParser {
+	public String formatTimestamp(long timestamp);
+
+	/**
+	 * Fills the record with the fields of the line, returns false when the
+	 * line does not have the expected layout.
+	 */
+	public boolean parse(String line, LogRecord record);
+
+	/**
+	 * Returns the epoch millis of a timestamp written as in the logs, or
+	 * Long.MIN_VALUE when the text is not a timestamp.
+	 */
+	public long parseTimestamp(String text);
+}
@@ -0,0 +1,59 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.structured;
+
+/**
+ * The fields of a parsed line. The same record is filled again for every
+ * line, the table keeps only its columns.
+ */
+public class LogRecord {
+	private long timestamp = Long.MIN_VALUE;
+	private String level = "";
+	private String thread = "";
+	private String logger = "";
+	private String message = "";
+
+	public String getLevel() {
+		return this.level;
+	}
+
+	public String getLogger() {
+		return this.logger;
+	}
+
+	public String getMessage() {
+		return this.message;
+	}
+
+	public String getThread() {
+		return this.thread;
+	}
+
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	public void set(long timestamp, String level, String thread, String logger, String message) {
+		this.timestamp = timestamp;
+		this.level = level;
+		this.thread = thread;
+		this.logger = logger;
+		this.message = message;
+	}
+}
@@ -0,0 +1,294 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.structured;
+
+import java.util.Arrays;
+
+import org.polly.output.LineStore;
+
+/**
+ * Parsed lines kept by column in primitive arrays: the timestamps as epoch
+ * millis, level, thread and logger as ids of their {@link Dictionary}, the
+ * messages as ranges of a single char array. Filtering and sorting work on
+ * row numbers and never create a string.
+ *
+ * The lines that the parser does not understand, like the ones of a stack
+ * trace, keep the timestamp of the line before and the whole text as
+ * message.
+ */
+public class LogTable {
+	public enum Column {
+		LINE, TIMESTAMP, LEVEL, THREAD, LOGGER, MESSAGE
+	}
+
+	private static final int LOAD_PAGE_SIZE = 10000;
+
+	/**
+	 * Parses every line of the store, stops early when the thread is
+	 * interrupted.
+	 */
+	public static LogTable load(LineStore store, LogLineParser parser) {
+		final LogTable table = new LogTable();
+		final LogRecord record = new LogRecord();
+		final int lineCount = store.getLineCount();
+		for (int first = 0; first < lineCount && !Thread.currentThread().isInterrupted(); first += LOAD_PAGE_SIZE) {
+			final String lines = store.getLines(first, Math.min(LOAD_PAGE_SIZE, lineCount - first));
+			int lineStart = 0;
+			int lineNumber = first;
+			while (lineStart < lines.length()) {
+				int lineEnd = lines.indexOf('\n', lineStart);
+				if (lineEnd < 0) {
+					lineEnd = lines.length();
+				}
+				final String line = lines.substring(lineStart, lineEnd);
+				if (parser.parse(line, record)) {
+					table.append(lineNumber, record.getTimestamp(), record.getLevel(), record.getThread(),
+							record.getLogger(), record.getMessage());
+				} else {
+					table.append(lineNumber, table.getLastTimestamp(), "", "", "", line);
+				}
+				lineStart = lineEnd + 1;
+				lineNumber++;
+			}
+		}
+		return table;
+	}
+
+	private final Dictionary levels = new Dictionary();
+	private final Dictionary threads = new Dictionary();
+	private final Dictionary loggers = new Dictionary();
+	private int rowCount = 0;
+	private int[] lineNumbers = new int[1024];
+	private long[] timestamps = new long[1024];
+	private int[] levelIds = new int[1024];
+	private int[] threadIds = new int[1024];
+	private int[] loggerIds = new int[1024];
+	private int[] messageStarts = new int[1025];
+	private char[] messages = new char[64 * 1024];
+	private boolean isTimeOrdered = true;
+
+	public void append(int lineNumber, long timestamp, String level, String thread, String logger, String message) {
+		if (this.rowCount == this.timestamps.length) {
+			final int capacity = this.rowCount * 2;
+			this.lineNumbers = Arrays.copyOf(this.lineNumbers, capacity);
+			this.timestamps = Arrays.copyOf(this.timestamps, capacity);
+			this.levelIds = Arrays.copyOf(this.levelIds, capacity);
+			this.threadIds = Arrays.copyOf(this.threadIds, capacity);
+			this.loggerIds = Arrays.copyOf(this.loggerIds, capacity);
+			this.messageStarts = Arrays.copyOf(this.messageStarts, capacity + 1);
+		}
+
+		final int messageStart = this.messageStarts[this.rowCount];
+		final int messageEnd = messageStart + message.length();
+		if (messageEnd > this.messages.length) {
+			this.messages = Arrays.copyOf(this.messages, Math.max(messageEnd, this.messages.length * 2));
+		}
+		message.getChars(0, message.length(), this.messages, messageStart);
+
+		this.isTimeOrdered &= this.rowCount == 0 || timestamp >= this.timestamps[this.rowCount - 1];
+		this.lineNumbers[this.rowCount] = lineNumber;
+		this.timestamps[this.rowCount] = timestamp;
+		this.levelIds[this.rowCount] = this.levels.getId(level);
+		this.threadIds[this.rowCount] = this.threads.getId(thread);
+		this.loggerIds[this.rowCount] = this.loggers.getId(logger);
+		this.rowCount++;
+		this.messageStarts[this.rowCount] = messageEnd;
+	}
+
+	private int compare(int a, int b, Column column, int[] ranks) {
+		switch (column) {
+		case LINE:
+			return Integer.compare(this.lineNumbers[a], this.lineNumbers[b]);
+		case TIMESTAMP:
+			return Long.compare(this.timestamps[a], this.timestamps[b]);
+		case LEVEL:
+			return Integer.compare(ranks[this.levelIds[a]], ranks[this.levelIds[b]]);
+		case THREAD:
+			return Integer.compare(ranks[this.threadIds[a]], ranks[this.threadIds[b]]);
+		case LOGGER:
+			return Integer.compare(ranks[this.loggerIds[a]], ranks[this.loggerIds[b]]);
+		default:
+			return this.compareMessages(a, b);
+		}
+	}
+
+	private int compareMessages(int a, int b) {
+		final int aStart = this.messageStarts[a];
+		final int aLength = this.messageStarts[a + 1] - aStart;
+		final int bStart = this.messageStarts[b];
+		final int bLength = this.messageStarts[b + 1] - bStart;
+		final int length = Math.min(aLength, bLength);
+		for (int i = 0; i < length; i++) {
+			final char aChar = this.messages[aStart + i];
+			final char bChar = this.messages[bStart + i];
+			if (aChar != bChar) {
+				return aChar - bChar;
+			}
+		}
+		return aLength - bLength;
+	}
+
+	private boolean containsMessage(int row, char[] text) {
+		final int start = this.messageStarts[row];
+		final int last = this.messageStarts[row + 1] - text.length;
+		for (int i = start; i <= last; i++) {
+			int j = 0;
+			while (j < text.length && this.messages[i + j] == text[j]) {
+				j++;
+			}
+			if (j == text.length) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the rows between the two timestamps (included) whose level and
+	 * logger are accepted and whose message contains the text. A null array
+	 * accepts every id, an empty text every message.
+	 */
+	public int[] filter(long from, long to, boolean[] acceptedLevels, boolean[] acceptedLoggers, String text) {
+		int first = 0;
+		int last = this.rowCount;
+		if (this.isTimeOrdered) {
+			// The time range is a slice of the table, found by two lookups
+			first = this.lowerBound(from);
+			last = to == Long.MAX_VALUE ? this.rowCount : this.lowerBound(to + 1);
+		}
+
+		final char[] textChars = text.toCharArray();
+		final int[] rows = new int[Math.max(0, last - first)];
+		int count = 0;
+		for (int row = first; row < last; row++) {
+			final long timestamp = this.timestamps[row];
+			if (timestamp < from || timestamp > to) {
+				continue;
+			}
+			if (acceptedLevels != null && !acceptedLevels[this.levelIds[row]]) {
+				continue;
+			}
+			if (acceptedLoggers != null && !acceptedLoggers[this.loggerIds[row]]) {
+				continue;
+			}
+			if (textChars.length > 0 && !this.containsMessage(row, textChars)) {
+				continue;
+			}
+			rows[count++] = row;
+		}
+		return Arrays.copyOf(rows, count);
+	}
+
+	private long getLastTimestamp() {
+		return this.rowCount == 0 ? Long.MIN_VALUE : this.timestamps[this.rowCount - 1];
+	}
+
+	public String getLevel(int row) {
+		return this.levels.getValue(this.levelIds[row]);
+	}
+
+	public Dictionary getLevels() {
+		return this.levels;
+	}
+
+	public int getLineNumber(int row) {
+		return this.lineNumbers[row];
+	}
+
+	public String getLogger(int row) {
+		return this.loggers.getValue(this.loggerIds[row]);
+	}
+
+	public Dictionary getLoggers() {
+		return this.loggers;
+	}
+
+	public String getMessage(int row) {
+		final int start = this.messageStarts[row];
+		return new String(this.messages, start, this.messageStarts[row + 1] - start);
+	}
+
+	public int getRowCount() {
+		return this.rowCount;
+	}
+
+	public String getThread(int row) {
+		return this.threads.getValue(this.threadIds[row]);
+	}
+
+	public long getTimestamp(int row) {
+		return this.timestamps[row];
+	}
+
+	private int lowerBound(long timestamp) {
+		int low = 0;
+		int high = this.rowCount;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (this.timestamps[middle] < timestamp) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Sorts the rows by a column, stable so that the rows with the same value
+	 * keep their previous order.
+	 */
+	public void sort(int[] rows, Column column, boolean isAscending) {
+		int[] ranks = null;
+		if (column == Column.LEVEL) {
+			ranks = this.levels.getRanks();
+		} else if (column == Column.THREAD) {
+			ranks = this.threads.getRanks();
+		} else if (column == Column.LOGGER) {
+			ranks = this.loggers.getRanks();
+		}
+
+		// Bottom up merge sort of the row numbers, no boxing
+		int[] source = rows;
+		int[] target = new int[rows.length];
+		for (int width = 1; width < rows.length; width *= 2) {
+			for (int start = 0; start < rows.length; start += 2 * width) {
+				final int middle = Math.min(start + width, rows.length);
+				final int end = Math.min(start + 2 * width, rows.length);
+				int left = start;
+				int right = middle;
+				for (int i = start; i < end; i++) {
+					boolean isLeft = right >= end;
+					if (left < middle && right < end) {
+						final int comparison = this.compare(source[left], source[right], column, ranks);
+						isLeft = isAscending ? comparison <= 0 : comparison >= 0;
+					}
+					target[i] = isLeft ? source[left++] : source[right++];
+				}
+			}
+			final int[] swap = source;
+			source = target;
+			target = swap;
+		}
+
+		if (source != rows) {
+			System.arraycopy(source, 0, rows, 0, rows.length);
+		}
+	}
+}
@@ -23,8 +23,6 @@ import java.awt.Color;
 import java.awt.Toolkit;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Vector;
@@ -32,18 +30,15 @@ import java.util.Vector;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JPanel;
-import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
+import javax.swing.JTabbedPane;
 import javax.swing.KeyStroke;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import org.polly.actions.Action;
 import org.polly.actions.ActionManager;
-import org.polly.actions.concrete.KillLastRunnedCommand;
 import org.polly.actions.concrete.RunCommand;
-import org.polly.actions.concrete.ShowSearchWindow;
-import org.polly.actions.concrete.TextAreaAddHighlight;
-import org.polly.actions.concrete.TextAreaClearHighlights;
-import org.polly.actions.concrete.TextAreaGoToNextHighlight;
+import org.polly.actions.concrete.SelectedSessionAction;
 import org.polly.persistency.Option;
 
 public class GrepUIPanel extends JPanel {
@@ -65,17 +60,22 @@ public class GrepUIPanel extends JPanel {
 		availableKeysForShorcut.add(KeyEvent.VK_F4);
 
 		defaultOptions = new Vector<Option>();
-		defaultOptions.add(new Option("pattern", "Pattern", "", "The patter to use into the grep command",
+		defaultOptions.add(new Option(RunCommand.pattern, "Pattern", "", "The patter to use into the grep command",
 				Option.VisibilityMode.VISIBLE_ALWAYS));
-		defaultOptions.add(new Option("filename", "Filename", "",
+		defaultOptions.add(new Option(RunCommand.filename, "Filename", "",
 				"The file/s to grep, it accept the wildcard * in order to select multiple files",
 				Option.VisibilityMode.VISIBLE_ALWAYS));
-		defaultOptions.add(new Option("additionalOption", "Additional option", "", "Grep additional option",
+		defaultOptions.add(new Option(RunCommand.additionalOption, "Additional option", "", "Grep additional option",
 				Option.VisibilityMode.VISIBLE_ON_DEMAND));
 
 		defaultOptions.add(new Option(RunCommand.command, "Command", "grep \"${pattern}\" ${additionalOption} ${filename} ",
 				Option.VisibilityMode.VISIBLE_ON_DEMAND));
 
+		defaultOptions.add(new Option(RunCommand.engine, "Engine", RunCommand.commandEngine,
+				"'" + RunCommand.commandEngine + "' runs the command above, '" + RunCommand.internalEngine
+						+ "' searches the filename inside GrepUI using every core (-i -w -v -F are supported)",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
 		defaultOptions.add(new Option(RunCommand.homePath, "Home", System.getProperty("user.home"),
 				Option.VisibilityMode.VISIBLE_ON_DEMAND));
 
@@ -83,15 +83,75 @@ public class GrepUIPanel extends JPanel {
 				Option.VisibilityMode.VISIBLE_ON_DEMAND));
 
 		defaultOptions.add(new Option(RunCommand.maxFileLineToRead, "Max line", "5000",
-				"Maximum number of line to reads from output", Option.VisibilityMode.VISIBLE_ON_DEMAND));
+				"Maximum number of line shown at once, the bar on the right moves through the whole output",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
 
-	}
+		defaultOptions.add(new Option(RunCommand.streamOutput, "Stream output", "true",
+				"Show the output while the command is running (true/false)", Option.VisibilityMode.VISIBLE_ON_DEMAND));
 
-	private Collection<Highlighter> highlighters;
+		defaultOptions.add(new Option(RunCommand.streamBatchSize, "Stream batch size", "500",
+				"Maximum number of lines appended to the view at once", Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.streamFlushInterval, "Stream flush interval", "200",
+				"Maximum time in ms that a streamed line waits before to be shown",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.indexDirectories, "Indexed directories", "",
+				"Space separated directories whose files are indexed by 'Update index', the internal engine reads only the parts of those files that may match",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.timeFrom, "Time from", "",
+				"Search only the lines from this time, in the timestamp format below or as HH:mm[:ss] on the day of each file; the files are read by the internal engine from the first line of the window",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.timeTo, "Time to", "",
+				"Search only the lines up to this time (included), same formats as Time from",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.mergeByTime, "Merge by time", "false",
+				"Show the matches of all the files interleaved by timestamp, each line starting with its file name; the files are searched by the internal engine (true/false)",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.lineParser, "Line parser", RunCommand.layoutLineParser,
+				"How the Table (F7) splits the lines: '" + RunCommand.layoutLineParser
+						+ "' uses the line layout and timestamp format below, otherwise the name of a class implementing org.polly.structured.LogLineParser",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.lineLayout, "Line layout", "timestamp level thread logger - message",
+				"Space separated fields of a line among timestamp, level, thread, logger and message (the rest of the line), any other word is skipped",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.timestampFormat, "Timestamp format", "yyyy-MM-dd HH:mm:ss.SSS",
+				"Format of the timestamps of the lines, as in java.time.format.DateTimeFormatter",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.followCapacity, "Follow buffer", "10000",
+				"Number of lines kept while following the files (F6), the oldest ones are dropped",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.incrementalSearch, "Incremental search", "false",
+				"With the internal engine, search again only the lines appended to the files since the last run of the same pattern (true/false)",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.resultCacheSize, "Result cache size", "0",
+				"Maximum MB of command outputs kept to answer again the same command on unchanged files, 0 disables it. Only the files of the filename glob are checked for changes: do not enable it for commands reading other files, pipes or remote hosts",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.memoryBudget, "Memory per tab", "64",
+				"Maximum MB of internal search results kept in memory by each tab, the rest is moved to disk",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+		defaultOptions.add(new Option(RunCommand.maxConcurrentJobs, "Max concurrent runs", "4",
+				"Maximum number of runs executed at once, the others wait in a queue",
+				Option.VisibilityMode.VISIBLE_ON_DEMAND));
+
+	}
 
 	private ActionManager actionManager;
-	private JScrollPane logScrollPane;
-	private JTextArea logArea;
+	private JTabbedPane sessionTabs;
+	private ResultSession activeSession;
+	private int sessionCount = 0;
+	private Collection<HighlightColor> highlights;
 	private JPanel grepPanel;
 	private OptionPanel grepOptionPanel;
 	private JMenuBar menuBar;
@@ -106,10 +166,32 @@ public class GrepUIPanel extends JPanel {
 		this.initUI(menuBar, highlights);
 	}
 
+	private void addSessionAction(String name, JMenu menu, KeyStroke keyStroke) {
+		this.actionManager.addAction(name, new SelectedSessionAction(this.sessionTabs, name), menu, keyStroke);
+	}
+
+	/**
+	 * Closes the selected tab killing its run, the last tab is replaced by an
+	 * empty one.
+	 */
+	public void closeSession() {
+		final ResultSession session = (ResultSession) this.sessionTabs.getSelectedComponent();
+		if (session == null) {
+			return;
+		}
+
+		session.close();
+		this.sessionTabs.remove(session);
+		if (this.sessionTabs.getTabCount() == 0) {
+			this.newSession();
+		}
+	}
+
 	private void initUI(JMenuBar menuBar, Collection<HighlightColor> highlights) {
 		this.setLayout(new BorderLayout(0, 0));
 
 		this.actionManager = new ActionManager();
+		this.highlights = highlights;
 
 		this.menuBar = menuBar;
 		this.editMenu = new JMenu("Edit");
@@ -125,55 +207,89 @@ public class GrepUIPanel extends JPanel {
 		this.grepOptionPanel = new OptionPanel(defaultOptions);
 		this.grepPanel.add(this.grepOptionPanel, BorderLayout.SOUTH);
 
-		this.logScrollPane = new JScrollPane();
-		this.add(this.logScrollPane, BorderLayout.CENTER);
-
-		this.logArea = new JTextArea();
-		this.logArea.setEditable(false);
-		this.logScrollPane.setViewportView(this.logArea);
+		this.sessionTabs = new JTabbedPane();
+		this.add(this.sessionTabs, BorderLayout.CENTER);
+		this.sessionTabs.addChangeListener(new ChangeListener() {
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				final ResultSession selected = (ResultSession) GrepUIPanel.this.sessionTabs.getSelectedComponent();
+				if (selected == GrepUIPanel.this.activeSession) {
+					return;
+				}
+
+				if (GrepUIPanel.this.activeSession != null) {
+					GrepUIPanel.this.activeSession.deactivate();
+				}
+				GrepUIPanel.this.activeSession = selected;
+				if (selected != null) {
+					selected.activate();
+				}
+			}
+		});
+
+		final int shortcutMask = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
+
+		this.addSessionAction(ResultSession.run, this.editMenu, KeyStroke.getKeyStroke(KeyEvent.VK_F5, 0));
+		this.addSessionAction(ResultSession.follow, this.editMenu, KeyStroke.getKeyStroke(KeyEvent.VK_F6, 0));
+		this.addSessionAction(ResultSession.killLastRun, this.editMenu, null);
+		this.addSessionAction(ResultSession.find, this.editMenu, KeyStroke.getKeyStroke(KeyEvent.VK_F, shortcutMask));
+		this.addSessionAction(ResultSession.table, this.editMenu, KeyStroke.getKeyStroke(KeyEvent.VK_F7, 0));
+		this.addSessionAction(ResultSession.updateIndex, this.editMenu, null);
 
-		final Action executeCommand = new RunCommand(this.logArea, this.grepOptionPanel.getOptions());
-		KeyStroke keyStroke = KeyStroke.getKeyStroke(KeyEvent.VK_F5, 0);
-		this.actionManager.addAction("Run", executeCommand, this.editMenu, this.logArea, keyStroke);
-
-		final Action killCommand = new KillLastRunnedCommand();
-		this.actionManager.addAction("Kill last run", killCommand, this.editMenu, this.logArea);
+		this.actionManager.addSeparator();
 
-		final Action showSearchWindow = new ShowSearchWindow(this.logArea);
-		keyStroke = KeyStroke.getKeyStroke(KeyEvent.VK_F, Toolkit.getDefaultToolkit().getMenuShortcutKeyMask());
-		this.actionManager.addAction("Find", showSearchWindow, this.editMenu, this.logArea, keyStroke);
+		this.addSessionAction(ResultSession.previousPage, this.editMenu,
+				KeyStroke.getKeyStroke(KeyEvent.VK_PAGE_UP, shortcutMask));
+		this.addSessionAction(ResultSession.nextPage, this.editMenu,
+				KeyStroke.getKeyStroke(KeyEvent.VK_PAGE_DOWN, shortcutMask));
 
 		this.actionManager.addSeparator();
 
+		final Action newSession = new Action() {
+			@Override
+			public void execute() {
+				GrepUIPanel.this.newSession();
+			}
+		};
+		this.actionManager.addAction("New tab", newSession, this.editMenu,
+				KeyStroke.getKeyStroke(KeyEvent.VK_T, shortcutMask));
+
+		final Action closeSession = new Action() {
+			@Override
+			public void execute() {
+				GrepUIPanel.this.closeSession();
+			}
+		};
+		this.actionManager.addAction("Close tab", closeSession, this.editMenu,
+				KeyStroke.getKeyStroke(KeyEvent.VK_W, shortcutMask));
+
 		final Iterator<Integer> keyIt = availableKeysForShorcut.iterator();
-		this.highlighters = new ArrayList<Highlighter>();
 		for (final HighlightColor highlightColor : highlights) {
-			// Build highlighter
-			final Highlighter highlighter = new Highlighter(this.logArea, highlightColor.getColor());
-			this.highlighters.add(highlighter);
-
-			// Add related menu items
-			keyStroke = null;
 			final int currentShortcutKey = keyIt.next();
 
-			final Action highlight = new TextAreaAddHighlight(this.logArea, highlighter);
-			keyStroke = KeyStroke.getKeyStroke(currentShortcutKey,
-					Toolkit.getDefaultToolkit().getMenuShortcutKeyMask());
-			this.actionManager.addAction("Highlight wth " + highlightColor.getName(), highlight, this.highlightsMenu,
-					this.logArea, keyStroke);
-
-			final Action clearHighlight = new TextAreaClearHighlights(highlighter);
-			keyStroke = KeyStroke.getKeyStroke(currentShortcutKey,
-					Toolkit.getDefaultToolkit().getMenuShortcutKeyMask() + InputEvent.SHIFT_MASK);
-			this.actionManager.addAction("Clear " + highlightColor.getName(), clearHighlight, this.highlightsMenu,
-					this.logArea, keyStroke);
-
-			final Action gotoNextHighlight = new TextAreaGoToNextHighlight(highlighter);
-			keyStroke = KeyStroke.getKeyStroke(currentShortcutKey, 0);
-			this.actionManager.addAction("Go to next " + highlightColor.getName(), gotoNextHighlight,
-					this.highlightsMenu, this.logArea, keyStroke);
+			this.addSessionAction(ResultSession.highlight(highlightColor), this.highlightsMenu,
+					KeyStroke.getKeyStroke(currentShortcutKey, shortcutMask));
+			this.addSessionAction(ResultSession.clearHighlight(highlightColor), this.highlightsMenu,
+					KeyStroke.getKeyStroke(currentShortcutKey, shortcutMask + InputEvent.SHIFT_MASK));
+			this.addSessionAction(ResultSession.gotoNextHighlight(highlightColor), this.highlightsMenu,
+					KeyStroke.getKeyStroke(currentShortcutKey, 0));
+			this.addSessionAction(ResultSession.gotoPreviousHighlight(highlightColor), this.highlightsMenu,
+					KeyStroke.getKeyStroke(currentShortcutKey, InputEvent.SHIFT_DOWN_MASK));
 
 			this.actionManager.addSeparator();
 		}
+
+		this.newSession();
+	}
+
+	/**
+	 * Opens a new empty tab and selects it, the runs of the other tabs keep
+	 * going in background.
+	 */
+	public void newSession() {
+		final ResultSession session = new ResultSession(this.grepOptionPanel.getOptions(), this.highlights);
+		this.sessionCount++;
+		this.sessionTabs.addTab("Search " + this.sessionCount, session);
+		this.sessionTabs.setSelectedComponent(session);
 	}
 }
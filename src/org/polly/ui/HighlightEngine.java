@@ -0,0 +1,181 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.awt.Graphics;
+import java.awt.Shape;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JTextArea;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+import org.polly.search.AhoCorasick;
+
+/**
+ * Highlights the words of every {@link Highlighter} of a text area at once:
+ * all the words of all the colours are compiled into a single automaton and
+ * the document is scanned once to find and colour every occurrence.
+ */
+public class HighlightEngine implements DocumentListener {
+	private final JTextArea textArea;
+	private final List<Highlighter> highlighters;
+	private AhoCorasick automaton = null;
+	private List<List<Highlighter>> owners = null;
+
+	public HighlightEngine(JTextArea textArea) {
+		this.textArea = textArea;
+		this.highlighters = new ArrayList<Highlighter>();
+
+		textArea.setHighlighter(new MatchHighlightLayer(this, textArea));
+		textArea.getDocument().addDocumentListener(this);
+	}
+
+	void addHighlighter(Highlighter highlighter) {
+		this.highlighters.add(highlighter);
+	}
+
+	private void buildAutomaton() {
+		final Map<String, List<Highlighter>> wordOwners = new LinkedHashMap<String, List<Highlighter>>();
+		for (final Highlighter highlighter : this.highlighters) {
+			for (final String word : highlighter.getWords()) {
+				List<Highlighter> owners = wordOwners.get(word);
+				if (owners == null) {
+					owners = new ArrayList<Highlighter>();
+					wordOwners.put(word, owners);
+				}
+				owners.add(highlighter);
+			}
+		}
+
+		if (wordOwners.isEmpty()) {
+			this.automaton = null;
+			this.owners = null;
+			return;
+		}
+
+		this.automaton = new AhoCorasick(new ArrayList<String>(wordOwners.keySet()));
+		this.owners = new ArrayList<List<Highlighter>>(wordOwners.values());
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e) {
+		// Only attributes changed, the text and so the highlights are the same
+	}
+
+	JTextArea getTextArea() {
+		return this.textArea;
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e) {
+		if (this.automaton == null) {
+			return;
+		}
+
+		final int offset = e.getOffset();
+		final int length = e.getLength();
+		final int margin = this.automaton.getMaxLength();
+		for (final Highlighter highlighter : this.highlighters) {
+			highlighter.removeHighlightsOverlapping(offset, offset, margin);
+			highlighter.shiftHighlights(offset, length);
+		}
+
+		// Only the occurrences touching the inserted text can be new
+		this.rescan(offset - margin, offset + length + margin);
+	}
+
+	void paint(Graphics g, int from, int to, Shape bounds) {
+		if (this.automaton == null) {
+			return;
+		}
+
+		final int maxLength = this.automaton.getMaxLength();
+		for (final Highlighter highlighter : this.highlighters) {
+			highlighter.paint(g, from, to, maxLength, bounds);
+		}
+	}
+
+	private void refreshHighlights() {
+		for (final Highlighter highlighter : this.highlighters) {
+			highlighter.clearHighlights();
+		}
+
+		if (this.automaton != null) {
+			this.rescan(0, this.textArea.getDocument().getLength());
+		}
+		this.textArea.repaint();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e) {
+		if (this.automaton == null) {
+			return;
+		}
+
+		final int offset = e.getOffset();
+		final int length = e.getLength();
+		final int margin = this.automaton.getMaxLength();
+		for (final Highlighter highlighter : this.highlighters) {
+			highlighter.removeHighlightsOverlapping(offset, offset + length, margin);
+			highlighter.shiftHighlights(offset + length, -length);
+		}
+
+		// Occurrences can be made by the text joined around the removed one
+		this.rescan(offset - margin, offset + margin);
+	}
+
+	private void rescan(int from, int to) {
+		final Document document = this.textArea.getDocument();
+		final int start = Math.max(0, from);
+		final int end = Math.min(document.getLength(), to);
+		for (final Highlighter highlighter : this.highlighters) {
+			highlighter.removeHighlightsWithin(start, end);
+		}
+
+		final Segment text = new Segment();
+		try {
+			document.getText(start, end - start, text);
+		} catch (final BadLocationException e) {
+			e.printStackTrace();
+			return;
+		}
+
+		this.automaton.scan(text, 0, text.length(), new AhoCorasick.MatchHandler() {
+			@Override
+			public void onMatch(int matchStart, int matchEnd, int word) {
+				for (final Highlighter highlighter : HighlightEngine.this.owners.get(word)) {
+					highlighter.addHighlight(start + matchStart, start + matchEnd);
+				}
+			}
+		});
+		this.textArea.repaint();
+	}
+
+	void wordsChanged() {
+		this.buildAutomaton();
+		this.refreshHighlights();
+	}
+}
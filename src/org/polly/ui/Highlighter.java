@@ -19,32 +19,32 @@
 package org.polly.ui;
 
 import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Shape;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
 
 import javax.swing.JTextArea;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
-import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import javax.swing.text.DefaultHighlighter;
 import javax.swing.text.Highlighter.HighlightPainter;
 
-public class Highlighter implements DocumentListener {
+public class Highlighter {
+	private final HighlightEngine engine;
 	private final JTextArea textArea;
-	private final Color color;
+	private final HighlightPainter painter;
 	private final Collection<String> wordsToHighlight;
-	private final Collection<Object> highlightTags;
-	private final Collection<Integer> highlightBookmarks;
+	private final MatchList highlights;
 
-	Highlighter(JTextArea textArea, Color color) {
-		this.textArea = textArea;
-		this.color = new Color(color.getRed(), color.getGreen(), color.getBlue(), 100);
+	Highlighter(HighlightEngine engine, Color color) {
+		this.engine = engine;
+		this.textArea = engine.getTextArea();
+		this.painter = new DefaultHighlighter.DefaultHighlightPainter(
+				new Color(color.getRed(), color.getGreen(), color.getBlue(), 100));
 		this.wordsToHighlight = new ArrayList<String>();
-		this.highlightTags = new ArrayList<Object>();
-		this.highlightBookmarks = new ArrayList<Integer>();
+		this.highlights = new MatchList();
 
-		textArea.getDocument().addDocumentListener(this);
+		engine.addHighlighter(this);
 	}
 
 	public void add(String word) throws Exception {
@@ -53,104 +53,98 @@ public class Highlighter implements DocumentListener {
 		}
 
 		this.wordsToHighlight.add(word);
-		this.highlight(word);
+		this.engine.wordsChanged();
 	}
 
-	@Override
-	public void changedUpdate(DocumentEvent e) {
-		this.refreshHighlights();
+	void addHighlight(int start, int end) {
+		this.highlights.add(start, end);
 	}
 
 	public void clear() {
 		this.wordsToHighlight.clear();
-		this.clearHighlights();
-		this.highlightBookmarks.clear();
+		this.engine.wordsChanged();
 	}
 
-	private void clearHighlights() {
-		for (final Object tag : this.highlightTags) {
-			this.textArea.getHighlighter().removeHighlight(tag);
-		}
-		this.highlightTags.clear();
+	void clearHighlights() {
+		this.highlights.clear();
+	}
+
+	Collection<String> getWords() {
+		return this.wordsToHighlight;
 	}
 
 	public void gotoNextHighlight() {
-		if (this.highlightBookmarks.isEmpty()) {
+		if (this.highlights.size() == 0) {
 			return;
 		}
 
-		final int currentPosition = this.textArea.getSelectionEnd();
-
-		int firstBookmarkPosition = -1;
-		int lastBookmarkPosition = 0;
-		final Iterator<Integer> currentBookmark = this.highlightBookmarks.iterator();
-		while (currentBookmark.hasNext()) {
-			final int currentBookmarkPosition = currentBookmark.next();
-
-			if (firstBookmarkPosition < 0) {
-				firstBookmarkPosition = currentBookmarkPosition;
-			}
-
-			lastBookmarkPosition = currentBookmarkPosition;
-			if (currentBookmarkPosition > currentPosition) {
-				this.selectCurrentLine(currentBookmarkPosition);
-				break;
-			}
+		// First highlight after the current selection, or back to the first
+		int next = this.highlights.lowerBound(this.textArea.getSelectionEnd() + 1);
+		if (next == this.highlights.size()) {
+			next = 0;
 		}
+		this.selectCurrentLine(this.highlights.getStart(next));
+	}
 
-		if (lastBookmarkPosition <= currentPosition) {
-			this.selectCurrentLine(firstBookmarkPosition);
+	public void gotoPreviousHighlight() {
+		if (this.highlights.size() == 0) {
+			return;
 		}
-	}
 
-	private void highlight(String word) throws BadLocationException {
-		final String text = this.textArea.getText();
-		final javax.swing.text.Highlighter highlighter = this.textArea.getHighlighter();
-		final HighlightPainter painter = new DefaultHighlighter.DefaultHighlightPainter(this.color);
-
-		int start = 0;
-		while ((start = text.indexOf(word, start)) != -1) {
-			final int end = start + word.length();
-			final Object highlightTag = highlighter.addHighlight(start, end, painter);
-			this.highlightTags.add(highlightTag);
-			this.highlightBookmarks.add(start);
-			start++;
+		// Last highlight before the current selection, or up to the last one
+		int previous = this.highlights.lowerBound(this.textArea.getSelectionStart()) - 1;
+		if (previous < 0) {
+			previous = this.highlights.size() - 1;
 		}
+		this.selectCurrentLine(this.highlights.getStart(previous));
 	}
 
-	@Override
-	public void insertUpdate(DocumentEvent e) {
-		this.refreshHighlights();
-	}
+	/**
+	 * Paints only the highlights that intersect the offsets range [from, to],
+	 * usually the part of the document currently visible.
+	 */
+	void paint(Graphics g, int from, int to, int maxLength, Shape bounds) {
+		for (int i = this.highlights.lowerBound(from - maxLength); i < this.highlights.size(); i++) {
+			final int start = this.highlights.getStart(i);
+			if (start > to) {
+				break;
+			}
 
-	private void refreshHighlights() {
-		this.clearHighlights();
-		for (final String word : this.wordsToHighlight) {
-			try {
-				this.highlight(word);
-			} catch (final BadLocationException e) {
-				e.printStackTrace();
+			final int end = this.highlights.getEnd(i);
+			if (end >= from) {
+				this.painter.paint(g, start, end, bounds, this.textArea);
 			}
 		}
 	}
 
-	@Override
-	public void removeUpdate(DocumentEvent e) {
-		this.refreshHighlights();
+	/**
+	 * Drops the highlights that overlap the range [from, to), or that contain
+	 * the offset when the range is empty.
+	 */
+	void removeHighlightsOverlapping(int from, int to, int maxLength) {
+		this.highlights.removeRange(this.highlights.lowerBound(from - maxLength), this.highlights.lowerBound(to), from,
+				Integer.MAX_VALUE);
+	}
+
+	void removeHighlightsWithin(int from, int to) {
+		this.highlights.removeRange(this.highlights.lowerBound(from), this.highlights.lowerBound(to), Integer.MIN_VALUE,
+				to);
 	}
 
 	private void selectCurrentLine(int currentBookmarkPosition) {
-		int lineStart = currentBookmarkPosition;
-		while (lineStart > 0 && this.textArea.getText().charAt(lineStart) != '\n') {
-			lineStart--;
-		}
+		final Element lines = this.textArea.getDocument().getDefaultRootElement();
+		final Element line = lines.getElement(lines.getElementIndex(currentBookmarkPosition));
 
-		int lineEnd = currentBookmarkPosition;
-		while (lineEnd < this.textArea.getText().length() && this.textArea.getText().charAt(lineEnd) != '\n') {
-			lineEnd++;
-		}
+		final int lineEnd = Math.min(line.getEndOffset() - 1, this.textArea.getDocument().getLength());
+		this.textArea.select(line.getStartOffset(), lineEnd);
+	}
 
-		this.textArea.select(lineStart, lineEnd);
+	/**
+	 * Keeps the offsets of the highlights starting at or after the offset in
+	 * line with an edit of the document.
+	 */
+	void shiftHighlights(int from, int delta) {
+		this.highlights.shift(this.highlights.lowerBound(from), delta);
 	}
 
 }
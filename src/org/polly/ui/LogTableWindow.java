@@ -0,0 +1,278 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingWorker;
+import javax.swing.table.AbstractTableModel;
+
+import org.polly.output.LineStore;
+import org.polly.structured.Dictionary;
+import org.polly.structured.LogLineParser;
+import org.polly.structured.LogTable;
+
+/**
+ * Shows the lines of a tab parsed into a {@link LogTable}. A click on a
+ * column header sorts by that column, the filters narrow the rows by time
+ * range, level, logger and message; everything happens on the table in
+ * memory, the files are not searched again.
+ */
+public class LogTableWindow extends JDialog {
+	private class RowsModel extends AbstractTableModel {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public int getColumnCount() {
+			return columnNames.length;
+		}
+
+		@Override
+		public String getColumnName(int column) {
+			return columnNames[column];
+		}
+
+		@Override
+		public int getRowCount() {
+			return LogTableWindow.this.rows.length;
+		}
+
+		@Override
+		public Object getValueAt(int rowIndex, int columnIndex) {
+			final LogTable table = LogTableWindow.this.table;
+			final int row = LogTableWindow.this.rows[rowIndex];
+			switch (LogTable.Column.values()[columnIndex]) {
+			case LINE:
+				return table.getLineNumber(row) + 1;
+			case TIMESTAMP:
+				return LogTableWindow.this.parser.formatTimestamp(table.getTimestamp(row));
+			case LEVEL:
+				return table.getLevel(row);
+			case THREAD:
+				return table.getThread(row);
+			case LOGGER:
+				return table.getLogger(row);
+			default:
+				return table.getMessage(row);
+			}
+		}
+	}
+
+	private static final long serialVersionUID = 1L;
+	private static final String allLevels = "All";
+	private static final String[] columnNames = { "Line", "Time", "Level", "Thread", "Logger", "Message" };
+
+	private final LogLineParser parser;
+	private final JTextField txtFrom;
+	private final JTextField txtTo;
+	private final JComboBox<String> cmbLevel;
+	private final JTextField txtLogger;
+	private final JTextField txtMessage;
+	private final JLabel lblStatus;
+	private final RowsModel model = new RowsModel();
+	private final SwingWorker<LogTable, Void> loader;
+	private LogTable table = null;
+	private int[] rows = new int[0];
+	private LogTable.Column sortColumn = null;
+	private boolean isSortAscending = true;
+
+	public LogTableWindow(JFrame owner, final LineStore store, final LogLineParser parser) {
+		super(owner);
+		this.setTitle("Table");
+		this.setBounds(100, 100, 1000, 600);
+		this.parser = parser;
+		this.getContentPane().setLayout(new BorderLayout());
+
+		final ActionListener filter = new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				LogTableWindow.this.filter();
+			}
+		};
+
+		final JPanel filterPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+		this.getContentPane().add(filterPanel, BorderLayout.NORTH);
+		filterPanel.add(new JLabel("From:"));
+		this.txtFrom = new JTextField(14);
+		this.txtFrom.setToolTipText("First time shown, in the timestamp format of the logs");
+		this.txtFrom.addActionListener(filter);
+		filterPanel.add(this.txtFrom);
+		filterPanel.add(new JLabel("To:"));
+		this.txtTo = new JTextField(14);
+		this.txtTo.setToolTipText("Last time shown, in the timestamp format of the logs");
+		this.txtTo.addActionListener(filter);
+		filterPanel.add(this.txtTo);
+		filterPanel.add(new JLabel("Level:"));
+		this.cmbLevel = new JComboBox<String>(new String[] { allLevels });
+		this.cmbLevel.addActionListener(filter);
+		filterPanel.add(this.cmbLevel);
+		filterPanel.add(new JLabel("Logger:"));
+		this.txtLogger = new JTextField(12);
+		this.txtLogger.setToolTipText("Part of the logger name");
+		this.txtLogger.addActionListener(filter);
+		filterPanel.add(this.txtLogger);
+		filterPanel.add(new JLabel("Message:"));
+		this.txtMessage = new JTextField(14);
+		this.txtMessage.addActionListener(filter);
+		filterPanel.add(this.txtMessage);
+		final JButton filterButton = new JButton("Filter");
+		filterButton.addActionListener(filter);
+		filterPanel.add(filterButton);
+
+		final JTable rowsTable = new JTable(this.model);
+		rowsTable.setAutoResizeMode(JTable.AUTO_RESIZE_LAST_COLUMN);
+		rowsTable.getColumnModel().getColumn(0).setPreferredWidth(60);
+		rowsTable.getColumnModel().getColumn(1).setPreferredWidth(170);
+		rowsTable.getColumnModel().getColumn(2).setPreferredWidth(60);
+		rowsTable.getColumnModel().getColumn(5).setPreferredWidth(500);
+		rowsTable.getTableHeader().addMouseListener(new MouseAdapter() {
+			@Override
+			public void mouseClicked(MouseEvent e) {
+				final int column = rowsTable.convertColumnIndexToModel(rowsTable.columnAtPoint(e.getPoint()));
+				if (column >= 0) {
+					LogTableWindow.this.sort(LogTable.Column.values()[column]);
+				}
+			}
+		});
+		this.getContentPane().add(new JScrollPane(rowsTable), BorderLayout.CENTER);
+
+		this.lblStatus = new JLabel("Parsing the lines...");
+		this.getContentPane().add(this.lblStatus, BorderLayout.SOUTH);
+
+		this.loader = new SwingWorker<LogTable, Void>() {
+			@Override
+			protected LogTable doInBackground() throws Exception {
+				return LogTable.load(store, parser);
+			}
+
+			@Override
+			protected void done() {
+				if (this.isCancelled()) {
+					return;
+				}
+
+				try {
+					LogTableWindow.this.setTable(this.get());
+				} catch (final Exception e) {
+					LogTableWindow.this.lblStatus
+							.setText(e.getCause() == null ? e.toString() : e.getCause().toString());
+				}
+			}
+		};
+		this.loader.execute();
+	}
+
+	@Override
+	public void dispose() {
+		this.loader.cancel(true);
+		super.dispose();
+	}
+
+	private void filter() {
+		if (this.table == null) {
+			return;
+		}
+
+		final long from = this.parseTime(this.txtFrom.getText(), Long.MIN_VALUE);
+		final long to = this.parseTime(this.txtTo.getText(), Long.MAX_VALUE);
+		if (from == Long.MIN_VALUE && !this.txtFrom.getText().trim().isEmpty()) {
+			this.lblStatus.setText("Invalid time: " + this.txtFrom.getText());
+			return;
+		}
+		if (to == Long.MIN_VALUE) {
+			this.lblStatus.setText("Invalid time: " + this.txtTo.getText());
+			return;
+		}
+
+		final String level = (String) this.cmbLevel.getSelectedItem();
+		boolean[] levels = null;
+		if (level != null && !allLevels.equals(level)) {
+			levels = this.getAccepted(this.table.getLevels(), level, true);
+		}
+		boolean[] loggers = null;
+		if (!this.txtLogger.getText().isEmpty()) {
+			loggers = this.getAccepted(this.table.getLoggers(), this.txtLogger.getText(), false);
+		}
+
+		this.rows = this.table.filter(from, to, levels, loggers, this.txtMessage.getText());
+		if (this.sortColumn != null) {
+			this.table.sort(this.rows, this.sortColumn, this.isSortAscending);
+		}
+		this.model.fireTableDataChanged();
+		this.lblStatus.setText(this.rows.length + " of " + this.table.getRowCount() + " lines");
+	}
+
+	private boolean[] getAccepted(Dictionary dictionary, String text, boolean isExact) {
+		final boolean[] accepted = new boolean[dictionary.size()];
+		for (int id = 0; id < accepted.length; id++) {
+			final String value = dictionary.getValue(id);
+			accepted[id] = isExact ? value.equals(text) : value.contains(text);
+		}
+		return accepted;
+	}
+
+	private long parseTime(String text, long defaultValue) {
+		if (text.trim().isEmpty()) {
+			return defaultValue;
+		}
+		return this.parser.parseTimestamp(text.trim());
+	}
+
+	private void setTable(LogTable table) {
+		final List<String> levels = new ArrayList<String>();
+		for (int id = 0; id < table.getLevels().size(); id++) {
+			if (!table.getLevels().getValue(id).isEmpty()) {
+				levels.add(table.getLevels().getValue(id));
+			}
+		}
+		Collections.sort(levels);
+		for (final String level : levels) {
+			this.cmbLevel.addItem(level);
+		}
+
+		this.table = table;
+		this.filter();
+	}
+
+	private void sort(LogTable.Column column) {
+		this.isSortAscending = column != this.sortColumn || !this.isSortAscending;
+		this.sortColumn = column;
+		if (this.table != null) {
+			this.table.sort(this.rows, column, this.isSortAscending);
+			this.model.fireTableDataChanged();
+		}
+	}
+}
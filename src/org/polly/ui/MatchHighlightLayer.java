@@ -0,0 +1,80 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.awt.Graphics;
+import java.awt.Insets;
+import java.awt.Rectangle;
+
+import javax.swing.JTextArea;
+import javax.swing.text.DefaultHighlighter;
+import javax.swing.text.Position;
+import javax.swing.text.View;
+
+/**
+ * Text area highlighter that, on top of the usual selection highlights,
+ * paints the occurrences found by the {@link HighlightEngine}. No highlight
+ * object is created per occurrence: only the occurrences that intersect the
+ * area being painted are looked up, so the painting cost depends on the
+ * size of the screen and not on the number of occurrences.
+ */
+class MatchHighlightLayer extends DefaultHighlighter {
+	private final HighlightEngine engine;
+	private final JTextArea textArea;
+
+	MatchHighlightLayer(HighlightEngine engine, JTextArea textArea) {
+		this.engine = engine;
+		this.textArea = textArea;
+	}
+
+	@Override
+	public void paint(Graphics g) {
+		super.paint(g);
+
+		final Rectangle clip = g.getClipBounds();
+		if (clip == null) {
+			return;
+		}
+
+		final Rectangle bounds = this.textArea.getBounds();
+		final Insets insets = this.textArea.getInsets();
+		bounds.x = insets.left;
+		bounds.y = insets.top;
+		bounds.width -= insets.left + insets.right;
+		bounds.height -= insets.top + insets.bottom;
+
+		final int from = this.viewToModel(clip.x, clip.y, bounds);
+		final int to = this.viewToModel(clip.x + clip.width, clip.y + clip.height, bounds);
+		if (from < 0 || to < 0) {
+			return;
+		}
+
+		this.engine.paint(g, from, to, bounds);
+	}
+
+	/**
+	 * Returns the offset at the point asking the root view directly, like the
+	 * text area does, without its methods deprecated after Java 8. Called
+	 * while painting, the document is already locked for reading.
+	 */
+	private int viewToModel(int x, int y, Rectangle bounds) {
+		final View root = this.textArea.getUI().getRootView(this.textArea);
+		return root.viewToModel(x, y, bounds, new Position.Bias[1]);
+	}
+}
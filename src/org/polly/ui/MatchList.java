@@ -0,0 +1,119 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.util.Arrays;
+
+/**
+ * The highlighted occurrences of a {@link Highlighter}, kept sorted by start
+ * offset in primitive arrays so the occurrences around an edit can be found
+ * with a binary search.
+ */
+class MatchList {
+	private int[] starts = new int[64];
+	private int[] ends = new int[64];
+	private int size = 0;
+
+	void add(int start, int end) {
+		if (this.size == this.starts.length) {
+			this.starts = Arrays.copyOf(this.starts, this.size * 2);
+			this.ends = Arrays.copyOf(this.ends, this.size * 2);
+		}
+
+		// Matches are found almost in order, the insertion point is usually
+		// the end of the list
+		int index = this.size;
+		while (index > 0 && this.starts[index - 1] > start) {
+			index--;
+		}
+		System.arraycopy(this.starts, index, this.starts, index + 1, this.size - index);
+		System.arraycopy(this.ends, index, this.ends, index + 1, this.size - index);
+
+		this.starts[index] = start;
+		this.ends[index] = end;
+		this.size++;
+	}
+
+	void clear() {
+		this.size = 0;
+	}
+
+	int getEnd(int index) {
+		return this.ends[index];
+	}
+
+	int getStart(int index) {
+		return this.starts[index];
+	}
+
+	/**
+	 * Returns the index of the first match starting at or after the offset.
+	 */
+	int lowerBound(int offset) {
+		int low = 0;
+		int high = this.size;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (this.starts[middle] < offset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Removes the matches between the two indexes that end after minEnd and
+	 * at or before maxEnd. The kept ones are compacted and the rest of the
+	 * list is moved once, whatever the number of removed matches.
+	 */
+	void removeRange(int fromIndex, int toIndex, int minEnd, int maxEnd) {
+		int kept = fromIndex;
+		for (int i = fromIndex; i < toIndex; i++) {
+			final int end = this.ends[i];
+			if (end <= minEnd || end > maxEnd) {
+				this.starts[kept] = this.starts[i];
+				this.ends[kept] = end;
+				kept++;
+			}
+		}
+		if (kept >= toIndex) {
+			return;
+		}
+
+		System.arraycopy(this.starts, toIndex, this.starts, kept, this.size - toIndex);
+		System.arraycopy(this.ends, toIndex, this.ends, kept, this.size - toIndex);
+		this.size -= toIndex - kept;
+	}
+
+	/**
+	 * Moves by delta every match from the index to the end of the list.
+	 */
+	void shift(int fromIndex, int delta) {
+		for (int i = fromIndex; i < this.size; i++) {
+			this.starts[i] += delta;
+			this.ends[i] += delta;
+		}
+	}
+
+	int size() {
+		return this.size;
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.awt.BorderLayout;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.JPanel;
+import javax.swing.JTextArea;
+
+import org.polly.actions.Action;
+import org.polly.actions.ActionManager;
+import org.polly.actions.concrete.FollowFiles;
+import org.polly.actions.concrete.KillLastRunnedCommand;
+import org.polly.actions.concrete.ResultViewMovePage;
+import org.polly.actions.concrete.RunCommand;
+import org.polly.actions.concrete.ShowLogTable;
+import org.polly.actions.concrete.ShowSearchWindow;
+import org.polly.actions.concrete.TextAreaAddHighlight;
+import org.polly.actions.concrete.TextAreaClearHighlights;
+import org.polly.actions.concrete.TextAreaGoToNextHighlight;
+import org.polly.actions.concrete.TextAreaGoToPreviousHighlight;
+import org.polly.actions.concrete.UpdateIndex;
+import org.polly.persistency.Option;
+
+/**
+ * A result tab: its own view, run command and highlighters. While the tab is
+ * not shown its lines are dropped from the text area and its store is moved
+ * to disk, so hidden tabs cost only their metadata.
+ */
+public class ResultSession extends JPanel {
+	private static final long serialVersionUID = 1L;
+
+	public static final String find = "Find";
+	public static final String follow = "Follow";
+	public static final String killLastRun = "Kill last run";
+	public static final String nextPage = "Next page";
+	public static final String previousPage = "Previous page";
+	public static final String run = "Run";
+	public static final String table = "Table";
+	public static final String updateIndex = "Update index";
+
+	public static String clearHighlight(HighlightColor color) {
+		return "Clear " + color.getName();
+	}
+
+	public static String gotoNextHighlight(HighlightColor color) {
+		return "Go to next " + color.getName();
+	}
+
+	public static String gotoPreviousHighlight(HighlightColor color) {
+		return "Go to previous " + color.getName();
+	}
+
+	public static String highlight(HighlightColor color) {
+		return "Highlight wth " + color.getName();
+	}
+
+	private final Map<String, Action> actions = new HashMap<String, Action>();
+	private final ActionManager actionManager = new ActionManager();
+	private final RunCommand runCommand;
+	private final ResultView resultView;
+
+	public ResultSession(Collection<Option> options, Collection<HighlightColor> highlights) {
+		this.setLayout(new BorderLayout(0, 0));
+
+		this.resultView = new ResultView();
+		this.add(this.resultView, BorderLayout.CENTER);
+		final JTextArea textArea = this.resultView.getTextArea();
+
+		this.runCommand = new RunCommand(this.resultView, options);
+		this.addAction(ResultSession.run, this.runCommand, true);
+		this.addAction(ResultSession.follow, new FollowFiles(this.runCommand), true);
+		this.addAction(ResultSession.killLastRun, new KillLastRunnedCommand(this.runCommand), true);
+		this.addAction(ResultSession.find, new ShowSearchWindow(textArea), true);
+		this.addAction(ResultSession.table, new ShowLogTable(this.resultView, this.runCommand), true);
+		this.addAction(ResultSession.updateIndex, new UpdateIndex(this.runCommand), false);
+		this.actionManager.addSeparator();
+
+		this.addAction(ResultSession.previousPage, new ResultViewMovePage(this.resultView, -1), false);
+		this.addAction(ResultSession.nextPage, new ResultViewMovePage(this.resultView, 1), false);
+
+		final HighlightEngine highlightEngine = new HighlightEngine(textArea);
+		for (final HighlightColor highlightColor : highlights) {
+			final Highlighter highlighter = new Highlighter(highlightEngine, highlightColor.getColor());
+			this.addAction(ResultSession.highlight(highlightColor), new TextAreaAddHighlight(textArea, highlighter),
+					true);
+			this.addAction(ResultSession.clearHighlight(highlightColor), new TextAreaClearHighlights(highlighter),
+					true);
+			this.addAction(ResultSession.gotoNextHighlight(highlightColor),
+					new TextAreaGoToNextHighlight(highlighter), true);
+			this.addAction(ResultSession.gotoPreviousHighlight(highlightColor),
+					new TextAreaGoToPreviousHighlight(highlighter), true);
+			this.actionManager.addSeparator();
+		}
+	}
+
+	/**
+	 * Shows again the lines of this session after {@link #deactivate()}.
+	 */
+	public void activate() {
+		this.resultView.resume();
+	}
+
+	private void addAction(String name, Action action, boolean isInPopup) {
+		this.actions.put(name, action);
+		if (isInPopup) {
+			this.actionManager.addAction(name, action, this.resultView.getTextArea());
+		}
+	}
+
+	/**
+	 * Kills the run of this session and releases its output.
+	 */
+	public void close() {
+		this.runCommand.close();
+	}
+
+	/**
+	 * Drops the shown lines and moves the stored output to disk, the run of
+	 * this session keeps going.
+	 */
+	public void deactivate() {
+		this.resultView.suspend();
+	}
+
+	public Action getAction(String name) {
+		return this.actions.get(name);
+	}
+
+	public JTextArea getTextArea() {
+		return this.resultView.getTextArea();
+	}
+}
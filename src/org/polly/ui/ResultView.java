@@ -0,0 +1,291 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.awt.BorderLayout;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollBar;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
+
+import org.polly.output.LineStore;
+
+/**
+ * Shows a {@link LineStore} one page at a time. Only the lines of the current
+ * page are decoded and loaded into the text area, the scroll bar on the right
+ * moves the page through the whole store.
+ */
+public class ResultView extends JPanel {
+	private static final long serialVersionUID = 1L;
+
+	private final JTextArea textArea;
+	private final JScrollBar pageBar;
+	private final JLabel titleLabel;
+	private final JLabel statusLabel;
+	private final JLabel progressLabel;
+	private LineStore store = null;
+	private int pageSize = 5000;
+	private int shownFirst = 0;
+	private int shownCount = 0;
+	private boolean isUpdatingBar = false;
+	private boolean isSuspended = false;
+	private boolean isFollowingTail = false;
+	private long droppedLineCount = 0;
+
+	public ResultView() {
+		this.setLayout(new BorderLayout(0, 0));
+
+		this.titleLabel = new JLabel(" ");
+		this.add(this.titleLabel, BorderLayout.NORTH);
+
+		this.textArea = new JTextArea();
+		this.textArea.setEditable(false);
+		final JScrollPane scrollPane = new JScrollPane(this.textArea);
+		this.add(scrollPane, BorderLayout.CENTER);
+
+		this.pageBar = new JScrollBar(JScrollBar.VERTICAL);
+		this.pageBar.setEnabled(false);
+		this.pageBar.setToolTipText("Move through the whole output");
+		this.add(this.pageBar, BorderLayout.EAST);
+		this.pageBar.addAdjustmentListener(new AdjustmentListener() {
+			@Override
+			public void adjustmentValueChanged(AdjustmentEvent e) {
+				if (!ResultView.this.isUpdatingBar && !e.getValueIsAdjusting()) {
+					ResultView.this.showPage(e.getValue());
+				}
+			}
+		});
+
+		final JPanel southPanel = new JPanel(new BorderLayout(8, 0));
+		this.statusLabel = new JLabel(" ");
+		southPanel.add(this.statusLabel, BorderLayout.CENTER);
+		this.progressLabel = new JLabel();
+		southPanel.add(this.progressLabel, BorderLayout.EAST);
+		this.add(southPanel, BorderLayout.SOUTH);
+	}
+
+	public int getPageSize() {
+		return this.pageSize;
+	}
+
+	public LineStore getStore() {
+		return this.store;
+	}
+
+	public JTextArea getTextArea() {
+		return this.textArea;
+	}
+
+	public void movePage(int pageDelta) {
+		if (this.store != null) {
+			this.showPage(this.shownFirst + pageDelta * this.pageSize);
+		}
+	}
+
+	/**
+	 * To be called on the EDT when the store has grown, the new lines are
+	 * appended to the current page while it is not full. When following the
+	 * tail the page always takes the new lines and loses the oldest ones.
+	 */
+	public void refresh() {
+		if (this.store == null) {
+			return;
+		}
+
+		// Lines may be dropped by the store while they are read, keep it
+		// still until the page is updated
+		synchronized (this.store) {
+			final long dropped = this.store.getDroppedLineCount();
+			final int droppedSinceShown = (int) Math.min(dropped - this.droppedLineCount, Integer.MAX_VALUE);
+			this.droppedLineCount = dropped;
+			this.shownFirst -= droppedSinceShown;
+			if (this.shownFirst < 0) {
+				if (!this.isSuspended) {
+					this.removeFirstLines(Math.min(-this.shownFirst, this.shownCount));
+				}
+				this.shownFirst = 0;
+			}
+
+			final int lineCount = this.store.getLineCount();
+			final int shownEnd = this.shownFirst + this.shownCount;
+			if (this.isSuspended || shownEnd >= lineCount) {
+				// Nothing to add
+			} else if (this.isFollowingTail && lineCount - shownEnd >= this.pageSize) {
+				this.showPage(lineCount - this.pageSize);
+			} else if (this.isFollowingTail) {
+				this.textArea.append(this.store.getLines(shownEnd, lineCount - shownEnd));
+				this.shownCount += lineCount - shownEnd;
+				if (this.shownCount > this.pageSize) {
+					final int toRemove = this.shownCount - this.pageSize;
+					this.removeFirstLines(toRemove);
+					this.shownFirst += toRemove;
+				}
+				this.textArea.setCaretPosition(this.textArea.getDocument().getLength());
+			} else if (this.shownCount < this.pageSize) {
+				final int toAdd = Math.min(this.pageSize - this.shownCount, lineCount - shownEnd);
+				this.textArea.append(this.store.getLines(shownEnd, toAdd));
+				this.shownCount += toAdd;
+			}
+		}
+		this.updatePageBar();
+	}
+
+	private void removeFirstLines(int count) {
+		if (count <= 0) {
+			return;
+		}
+
+		final Document document = this.textArea.getDocument();
+		final Element root = document.getDefaultRootElement();
+		this.shownCount -= count;
+		if (count >= root.getElementCount()) {
+			this.textArea.setText("");
+			return;
+		}
+
+		try {
+			document.remove(0, root.getElement(count - 1).getEndOffset());
+		} catch (final BadLocationException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Loads again the page shown before {@link #suspend()}.
+	 */
+	public void resume() {
+		if (!this.isSuspended) {
+			return;
+		}
+
+		this.isSuspended = false;
+		if (this.store != null) {
+			this.showPage(this.shownFirst);
+		}
+	}
+
+	/**
+	 * Keeps the last lines of the store in the page as new lines come, for
+	 * stores that keep growing like the one of a followed file.
+	 */
+	public void setFollowingTail(boolean isFollowingTail) {
+		this.isFollowingTail = isFollowingTail;
+		if (isFollowingTail && this.store != null) {
+			this.showPage(this.store.getLineCount());
+		}
+	}
+
+	public void setMessage(String message) {
+		this.setStore(null, " ");
+		this.setProgress("");
+		this.textArea.setText(message);
+	}
+
+	public void setPageSize(int pageSize) {
+		this.pageSize = Math.max(1, pageSize);
+	}
+
+	/**
+	 * Shows how far the job of the store is, next to the page status.
+	 */
+	public void setProgress(String progress) {
+		this.progressLabel.setText(progress);
+	}
+
+	/**
+	 * Shows the store from its first line. The store is owned by the caller,
+	 * the view never closes it.
+	 */
+	public void setStore(LineStore store, String title) {
+		this.store = store;
+		this.isSuspended = false;
+		this.isFollowingTail = false;
+		this.droppedLineCount = store == null ? 0 : store.getDroppedLineCount();
+		this.titleLabel.setText(title);
+		this.shownFirst = 0;
+		this.shownCount = 0;
+		this.textArea.setText("");
+		this.refresh();
+		this.updatePageBar();
+	}
+
+	public void setTitle(String title) {
+		this.titleLabel.setText(title);
+	}
+
+	public void showPage(int first) {
+		if (this.store == null) {
+			return;
+		}
+
+		synchronized (this.store) {
+			final int lineCount = this.store.getLineCount();
+			first = Math.max(0, Math.min(first, lineCount - this.pageSize));
+
+			this.droppedLineCount = this.store.getDroppedLineCount();
+			this.shownFirst = first;
+			this.shownCount = Math.min(this.pageSize, lineCount - first);
+			this.textArea.setText(this.store.getLines(this.shownFirst, this.shownCount));
+		}
+		this.textArea.setCaretPosition(this.isFollowingTail ? this.textArea.getDocument().getLength() : 0);
+		this.updatePageBar();
+	}
+
+	/**
+	 * Frees the memory used by the page while the view is hidden, the store
+	 * is asked to spill its content to disk.
+	 */
+	public void suspend() {
+		if (this.isSuspended || this.store == null) {
+			return;
+		}
+
+		this.isSuspended = true;
+		this.shownCount = 0;
+		this.textArea.setText("");
+		this.store.spill();
+	}
+
+	private void updatePageBar() {
+		final int lineCount = this.store == null ? 0 : this.store.getLineCount();
+
+		this.isUpdatingBar = true;
+		this.pageBar.setValues(this.shownFirst, Math.min(this.pageSize, lineCount), 0, Math.max(lineCount, 1));
+		this.pageBar.setUnitIncrement(Math.max(1, this.pageSize / 2));
+		this.pageBar.setBlockIncrement(this.pageSize);
+		this.pageBar.setEnabled(lineCount > this.pageSize);
+		this.isUpdatingBar = false;
+
+		if (this.store == null) {
+			this.statusLabel.setText(" ");
+		} else if (this.shownCount == 0) {
+			this.statusLabel.setText("No lines");
+		} else {
+			this.statusLabel.setText("Lines " + (this.shownFirst + 1) + " - " + (this.shownFirst + this.shownCount)
+					+ " of " + lineCount);
+		}
+	}
+}
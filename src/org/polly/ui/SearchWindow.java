@@ -20,10 +20,15 @@ package org.polly.ui;
 
 import java.awt.BorderLayout;
 import java.awt.FlowLayout;
+import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.PatternSyntaxException;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -33,16 +38,51 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.AbstractDocument;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Segment;
+
+import org.polly.search.InterruptibleCharSequence;
+import org.polly.search.SearchQuery;
 
 public class SearchWindow extends JDialog {
 	private static final long serialVersionUID = 1L;
+	private static final int SEARCH_CHUNK_SIZE = 1024 * 1024;
+
+	static int lowerBound(int[] values, int value) {
+		int low = 0;
+		int high = values.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (values[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
 	private final JPanel contentPanel = new JPanel();
 	private final JCheckBox chckbxReverseSearch;
 	private JTextField txtSearch;
 	private JPanel searchBoxPanel;
 
+	private final JCheckBox chckbxRegex;
+	private final JCheckBox chckbxIgnoreCase;
+	private final JCheckBox chckbxWholeWord;
 	private final JTextArea searchArea;
+	private final JLabel lblMatches;
+	private int[] matchStarts = null;
+	private int[] matchEnds = null;
+	private String indexedSearch = null;
+	private int documentVersion = 0;
+	private SwingWorker<Void, Integer> indexer = null;
 
 	/**
 	 * Create the dialog.
@@ -67,7 +107,24 @@ public class SearchWindow extends JDialog {
 		});
 
 		this.searchArea = textArea;
-		this.setBounds(100, 100, 450, 166);
+		this.searchArea.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+				// Attributes do not change the matches
+			}
+
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				SearchWindow.this.invalidateMatchIndex();
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				SearchWindow.this.invalidateMatchIndex();
+			}
+		});
+
+		this.setBounds(100, 100, 450, 196);
 		this.getContentPane().setLayout(new BorderLayout());
 		this.contentPanel.setBorder(new EmptyBorder(5, 5, 5, 5));
 		this.getContentPane().add(this.contentPanel, BorderLayout.CENTER);
@@ -83,14 +140,31 @@ public class SearchWindow extends JDialog {
 			this.searchBoxPanel.add(this.txtSearch, BorderLayout.NORTH);
 			this.contentPanel.add(this.searchBoxPanel, BorderLayout.CENTER);
 
+			final JPanel searchOptionPanel = new JPanel();
+			searchOptionPanel.setLayout(new GridLayout(2, 2));
+			this.searchBoxPanel.add(searchOptionPanel, BorderLayout.SOUTH);
+
 			this.chckbxReverseSearch = new JCheckBox("Reverse search");
-			this.searchBoxPanel.add(this.chckbxReverseSearch, BorderLayout.SOUTH);
+			searchOptionPanel.add(this.chckbxReverseSearch);
 			this.chckbxReverseSearch.setToolTipText("Search from bottom to top");
+
+			this.chckbxRegex = new JCheckBox("Regular expression");
+			searchOptionPanel.add(this.chckbxRegex);
+			this.chckbxRegex.setToolTipText("Search a Java regular expression instead of a plain text");
+
+			this.chckbxIgnoreCase = new JCheckBox("Ignore case");
+			searchOptionPanel.add(this.chckbxIgnoreCase);
+
+			this.chckbxWholeWord = new JCheckBox("Whole word");
+			searchOptionPanel.add(this.chckbxWholeWord);
 		}
 		{
 			final JPanel panel = new JPanel();
+			panel.setLayout(new FlowLayout(FlowLayout.LEFT));
 			this.contentPanel.add(panel, BorderLayout.SOUTH);
 
+			this.lblMatches = new JLabel(" ");
+			panel.add(this.lblMatches);
 		}
 		{
 			final JPanel buttonPane = new JPanel();
@@ -108,73 +182,192 @@ public class SearchWindow extends JDialog {
 				buttonPane.add(okButton);
 				this.getRootPane().setDefaultButton(okButton);
 			}
+			{
+				final JButton stopButton = new JButton("Stop");
+				stopButton.setToolTipText("Stop a search that takes too long");
+				stopButton.addActionListener(new ActionListener() {
+					@Override
+					public void actionPerformed(ActionEvent e) {
+						SearchWindow.this.invalidateMatchIndex();
+						SearchWindow.this.lblMatches.setText("Stopped");
+					}
+				});
+				buttonPane.add(stopButton);
+			}
 		}
 	}
 
-	private void search() {
-		this.searchArea.requestFocus();
-		if (this.chckbxReverseSearch.isSelected()) {
-			if (!this.searchUp()) {
-				this.searchUp(this.searchArea.getText().length());
+	private void buildMatchIndex(final SearchQuery query, final String searchKey) {
+		this.lblMatches.setText("Searching...");
+		final int version = this.documentVersion;
+		final Document document = this.searchArea.getDocument();
+
+		this.indexer = new SwingWorker<Void, Integer>() {
+			private int[] starts = new int[64];
+			private int[] ends = new int[64];
+			private int count = 0;
+
+			@Override
+			protected Void doInBackground() throws Exception {
+				final Segment text = new Segment();
+				final BadLocationException[] error = new BadLocationException[1];
+				final Runnable read = new Runnable() {
+					@Override
+					public void run() {
+						try {
+							document.getText(0, document.getLength(), text);
+						} catch (final BadLocationException e) {
+							error[0] = e;
+						}
+					}
+				};
+				if (document instanceof AbstractDocument) {
+					((AbstractDocument) document).render(read);
+				} else {
+					read.run();
+				}
+				if (error[0] != null) {
+					throw error[0];
+				}
+
+				// The text is evaluated a chunk of lines at a time, between
+				// chunks the progress is shown and the cancellation checked.
+				// Within a chunk the interruptible text stops a pathological
+				// expression.
+				final Matcher matcher = query.getPattern().matcher(new InterruptibleCharSequence(text));
+				final int length = text.length();
+				int chunkStart = 0;
+				while (chunkStart < length && !this.isCancelled()) {
+					int chunkEnd = Math.min(length, chunkStart + SEARCH_CHUNK_SIZE);
+					while (chunkEnd < length && text.charAt(chunkEnd - 1) != '\n') {
+						chunkEnd++;
+					}
+
+					matcher.region(chunkStart, chunkEnd);
+					while (matcher.find()) {
+						if (matcher.end() > matcher.start()) {
+							this.add(matcher.start(), matcher.end());
+						}
+					}
+					this.publish(this.count);
+					chunkStart = chunkEnd;
+				}
+				return null;
 			}
-		} else {
-			if (!this.searchDown()) {
-				this.searchDown(0);
+
+			private void add(int start, int end) {
+				if (this.count == this.starts.length) {
+					this.starts = Arrays.copyOf(this.starts, this.count * 2);
+					this.ends = Arrays.copyOf(this.ends, this.count * 2);
+				}
+				this.starts[this.count] = start;
+				this.ends[this.count] = end;
+				this.count++;
 			}
-		}
 
-		// The set visible to true is required in order to get have the ability
-		// to continue to press enter and go ahead with the research. Without
-		// this call the search window lose the focus and if press enter the
-		// event is captured by the window that contains the searchArea
-		this.setVisible(true);
+			@Override
+			protected void done() {
+				if (this.isCancelled() || version != SearchWindow.this.documentVersion) {
+					return;
+				}
+
+				try {
+					this.get();
+					SearchWindow.this.matchStarts = Arrays.copyOf(this.starts, this.count);
+					SearchWindow.this.matchEnds = Arrays.copyOf(this.ends, this.count);
+					SearchWindow.this.indexedSearch = searchKey;
+					SearchWindow.this.goToMatch();
+				} catch (final Exception e) {
+					SearchWindow.this.lblMatches.setText(e.getCause() == null ? e.toString() : e.getCause().toString());
+				}
+			}
+
+			@Override
+			protected void process(List<Integer> counts) {
+				if (!this.isCancelled()) {
+					SearchWindow.this.lblMatches
+							.setText("Searching... " + counts.get(counts.size() - 1) + " matches so far");
+				}
+			}
+		};
+		this.indexer.execute();
 	}
 
-	private boolean searchDown() {
-		return this.searchDown(this.searchArea.getSelectionEnd());
+	private String getSearchKey() {
+		return this.chckbxRegex.isSelected() + ":" + this.chckbxIgnoreCase.isSelected() + ":"
+				+ this.chckbxWholeWord.isSelected() + ":" + this.txtSearch.getText();
 	}
 
-	private boolean searchDown(int from) {
-		final String toSearch = this.txtSearch.getText();
-		final String text = this.searchArea.getText();
+	private void goToMatch() {
+		if (this.matchStarts.length == 0) {
+			this.lblMatches.setText("No match");
+			return;
+		}
 
-		final int found = text.indexOf(toSearch, from);
-		if (found == -1) {
-			return false;
+		int found;
+		if (this.chckbxReverseSearch.isSelected()) {
+			found = lowerBound(this.matchStarts, this.searchArea.getSelectionStart()) - 1;
+			if (found < 0) {
+				found = this.matchStarts.length - 1;
+			}
+		} else {
+			found = lowerBound(this.matchStarts, this.searchArea.getSelectionEnd());
+			if (found == this.matchStarts.length) {
+				found = 0;
+			}
 		}
 
-		this.searchArea.setSelectionStart(found);
-		this.searchArea.setSelectionEnd(found + toSearch.length());
-		return true;
-	}
+		this.searchArea.requestFocus();
+		this.searchArea.setSelectionStart(this.matchStarts[found]);
+		this.searchArea.setSelectionEnd(this.matchEnds[found]);
+		this.lblMatches.setText("Match " + (found + 1) + " of " + this.matchStarts.length);
 
-	private boolean searchUp() {
-		final int pos = this.searchArea.getSelectionStart();
-		return this.searchUp(pos);
+		// Keep the focus on the dialog, see search()
+		this.setVisible(true);
 	}
 
-	private boolean searchUp(int from) {
-		final String toSearch = this.txtSearch.getText();
-		final String text = this.searchArea.getText();
-
-		from--;
-		if (from <= 0) {
-			from = this.txtSearch.getText().length();
+	private void invalidateMatchIndex() {
+		this.documentVersion++;
+		this.matchStarts = null;
+		this.matchEnds = null;
+		if (this.indexer != null) {
+			this.indexer.cancel(true);
+			this.indexer = null;
 		}
+	}
+
+	private void search() {
+		this.searchArea.requestFocus();
 
-		final int found = text.lastIndexOf(toSearch, from);
-		if (found == -1) {
-			return false;
+		final String toSearch = this.txtSearch.getText();
+		final String searchKey = this.getSearchKey();
+		if (toSearch.isEmpty()) {
+			this.lblMatches.setText(" ");
+		} else if (this.matchStarts != null && searchKey.equals(this.indexedSearch)) {
+			this.goToMatch();
+		} else {
+			// The index is built once per text and search, then every
+			// search is a binary search into it
+			this.invalidateMatchIndex();
+			try {
+				final SearchQuery query = new SearchQuery(toSearch, this.chckbxIgnoreCase.isSelected(),
+						this.chckbxWholeWord.isSelected(), false, !this.chckbxRegex.isSelected());
+				this.buildMatchIndex(query, searchKey);
+			} catch (final PatternSyntaxException e) {
+				this.lblMatches.setText("Invalid expression: " + e.getDescription());
+			}
 		}
 
-		this.searchArea.setSelectionStart(found);
-		this.searchArea.setSelectionEnd(found + toSearch.length());
-		return true;
+		// The set visible to true is required in order to get have the ability
+		// to continue to press enter and go ahead with the research. Without
+		// this call the search window lose the focus and if press enter the
+		// event is captured by the window that contains the searchArea
+		this.setVisible(true);
 	}
 
 	@Override
 	public void setVisible(boolean b) {
-		if (b) {
+		if (b && !this.isVisible()) {
 			if (this.searchArea.getSelectedText() != null && this.searchArea.getSelectedText().length() > 0) {
 				this.txtSearch.setText(this.searchArea.getSelectedText());
 			}
@@ -184,7 +377,7 @@ public class SearchWindow extends JDialog {
 
 	@Override
 	public void show() {
-		if (this.searchArea.getSelectedText() != null && this.searchArea.getSelectedText().length() > 0) {
+		if (!this.isVisible() && this.searchArea.getSelectedText() != null && this.searchArea.getSelectedText().length() > 0) {
 			this.txtSearch.setText(this.searchArea.getSelectedText());
 		}
 		super.show();
@@ -0,0 +1,105 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.polly.test.TestCase;
+
+public class AhoCorasickTest extends TestCase {
+	private static String randomText(Random random, int length) {
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			// Few letters, so the words overlap a lot
+			text.append((char) ('a' + random.nextInt(3)));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns the occurrences found by the automaton as start:end:word.
+	 */
+	private static List<String> scan(List<String> words, String text, int from, int to) {
+		final List<String> found = new ArrayList<String>();
+		new AhoCorasick(words).scan(text, from, to, new AhoCorasick.MatchHandler() {
+			@Override
+			public void onMatch(int start, int end, int word) {
+				found.add(start + ":" + end + ":" + word);
+			}
+		});
+		return found;
+	}
+
+	/**
+	 * Returns the occurrences of the words inside text[from, to) looking at
+	 * every position, in the order the automaton reports them: by end, then
+	 * the longest first.
+	 */
+	private static List<String> scanSlowly(List<String> words, String text, int from, int to) {
+		final List<String> found = new ArrayList<String>();
+		for (int end = from + 1; end <= to; end++) {
+			for (int start = from; start < end; start++) {
+				final int word = words.indexOf(text.substring(start, end));
+				if (word >= 0) {
+					found.add(start + ":" + end + ":" + word);
+				}
+			}
+		}
+		return found;
+	}
+
+	public void testCaseIsSignificant() {
+		assertEquals(Arrays.asList("6:11:0"), scan(Arrays.asList("Error"), "ERROR Error error", 0, 17));
+	}
+
+	public void testMatchesCrossingTheRangeAreNotReported() {
+		final List<String> words = Arrays.asList("abc", "bc");
+		assertEquals(Arrays.asList("2:5:0", "3:5:1"), scan(words, "xxabcxx", 0, 7));
+		assertEquals(Arrays.<String> asList(), scan(words, "xxabcxx", 0, 4));
+		assertEquals(Arrays.asList("3:5:1"), scan(words, "xxabcxx", 3, 7));
+	}
+
+	public void testNestedAndOverlappingWords() {
+		final List<String> words = Arrays.asList("he", "she", "his", "hers");
+		assertEquals(Arrays.asList("1:4:1", "2:4:0", "2:6:3"), scan(words, "ushers", 0, 6));
+	}
+
+	public void testRandomTextAgainstEveryPosition() {
+		final Random random = new Random(42);
+		for (int round = 0; round < 500; round++) {
+			final List<String> words = new ArrayList<String>();
+			final int wordCount = 1 + random.nextInt(6);
+			while (words.size() < wordCount) {
+				final String word = randomText(random, 1 + random.nextInt(4));
+				if (!words.contains(word)) {
+					words.add(word);
+				}
+			}
+			final String text = randomText(random, random.nextInt(60));
+			final int from = random.nextInt(text.length() + 1);
+			final int to = from + random.nextInt(text.length() - from + 1);
+
+			assertEquals(words + " in " + text + " [" + from + ", " + to + ")", scanSlowly(words, text, from, to),
+					scan(words, text, from, to));
+		}
+	}
+}
@@ -0,0 +1,143 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.polly.test.TestCase;
+
+public class LiteralScannerTest extends TestCase {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static ByteBuffer direct(byte[] bytes) {
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes).flip();
+		return buffer;
+	}
+
+	/**
+	 * Returns the first position of the literal between from and to looking
+	 * at every byte, folding the ASCII letters when ignoring the case.
+	 */
+	private static int indexOfSlowly(byte[] text, byte[] literal, int from, int to, boolean isIgnoreCase) {
+		for (int i = from; i + literal.length <= to; i++) {
+			int k = 0;
+			while (k < literal.length && lower(text[i + k], isIgnoreCase) == lower(literal[k], isIgnoreCase)) {
+				k++;
+			}
+			if (k == literal.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int lower(byte b, boolean isIgnoreCase) {
+		return isIgnoreCase && b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b;
+	}
+
+	private static LiteralScanner scanner(String pattern, String options) {
+		return LiteralScanner.of(SearchQuery.parse(pattern, options));
+	}
+
+	public void testCaseFolding() {
+		final LiteralScanner scanner = scanner("error", "-i");
+		final byte[] text = "xx ErRoR yy".getBytes(UTF8);
+		assertEquals(3, scanner.indexOf(ByteBuffer.wrap(text), 0, text.length));
+
+		// Bytes that fold on a letter with the case bit are not letters
+		final byte[] folded = "\u00c5RROR @rror `rror".getBytes(UTF8);
+		assertEquals(-1, scanner("arror", "-i").indexOf(ByteBuffer.wrap(folded), 0, folded.length));
+		assertEquals(-1, scanner("error", "").indexOf(ByteBuffer.wrap(text), 0, text.length));
+	}
+
+	public void testExactness() {
+		assertTrue("a fixed string is exact", scanner("a.b", "-F").isExact());
+		assertTrue("a literal expression is exact", scanner("ERROR", "").isExact());
+		assertFalse("a whole word has to be checked", scanner("ERROR", "-w").isExact());
+		assertFalse("a regular expression has to be checked", scanner("took 1[0-9]{3} ms", "-E").isExact());
+	}
+
+	public void testLiteralChoice() {
+		assertNull("an inverted search reads every line", scanner("ERROR", "-v"));
+		assertNull("an alternation has no required literal", scanner("ERROR|WARN", ""));
+		assertNull("an expression with inline flags has no literal", scanner("(?i)error", ""));
+		// Ignoring the case these match non ASCII forms, like the Kelvin sign
+		assertNull("k ignoring the case", scanner("kill", "-i"));
+		assertNull("s ignoring the case", scanner("session", "-i"));
+		assertNull("i ignoring the case", scanner("id", "-i"));
+		assertNull("non ASCII ignoring the case", scanner("\u00e9t\u00e9", "-i"));
+
+		// The longest required literal is scanned
+		final LiteralScanner scanner = scanner("a+ longer.x", "");
+		final byte[] text = "a longer x, longer".getBytes(UTF8);
+		assertEquals(1, scanner.indexOf(ByteBuffer.wrap(text), 0, text.length));
+	}
+
+	public void testNonAsciiLiteral() {
+		final LiteralScanner scanner = scanner("d\u00e9j\u00e0 vu", "");
+		final byte[] text = "un d\u00e9j\u00e0 vu, deja vu".getBytes(UTF8);
+		assertEquals(3, scanner.indexOf(ByteBuffer.wrap(text), 0, text.length));
+	}
+
+	public void testRandomBytesAgainstEveryPosition() {
+		final Random random = new Random(3);
+		final String[] literals = { "e", "er", "err", "error", "errorerror", "r=r" };
+		// Mostly bytes of the literals in both cases, plus some others and
+		// bytes that differ from a letter by the case bit only
+		final byte[] alphabet = "eErRoO=\n@`\u00c5".getBytes(UTF8);
+		for (int round = 0; round < 3000; round++) {
+			final boolean isIgnoreCase = random.nextBoolean();
+			final String literal = literals[random.nextInt(literals.length)];
+			final byte[] text = new byte[random.nextInt(80)];
+			for (int i = 0; i < text.length; i++) {
+				text[i] = alphabet[random.nextInt(alphabet.length)];
+			}
+			final int from = random.nextInt(text.length + 1);
+			final int to = from + random.nextInt(text.length - from + 1);
+
+			final LiteralScanner scanner = scanner(literal, isIgnoreCase ? "-i" : "");
+			final int expected = indexOfSlowly(text, literal.getBytes(UTF8), from, to, isIgnoreCase);
+			final String where = literal + (isIgnoreCase ? " -i" : "") + " in [" + from + ", " + to + ") of "
+					+ new String(text, UTF8);
+			assertEquals(where, expected, scanner.indexOf(ByteBuffer.wrap(text), from, to));
+			assertEquals(where, expected, scanner.indexOf(direct(text), from, to));
+			assertEquals(where, expected,
+					scanner.indexOf(ByteBuffer.wrap(text).order(ByteOrder.LITTLE_ENDIAN), from, to));
+		}
+	}
+
+	public void testWordBoundaries() {
+		// Every alignment of the literal against the eight byte words
+		final LiteralScanner scanner = scanner("needle", "");
+		for (int position = 0; position < 24; position++) {
+			final StringBuilder text = new StringBuilder("........................................");
+			text.replace(position, position + 6, "needle");
+			final byte[] bytes = text.toString().getBytes(UTF8);
+			assertEquals(position, scanner.indexOf(ByteBuffer.wrap(bytes), 0, bytes.length));
+			// Found only when it fits before the end
+			assertEquals(-1, scanner.indexOf(ByteBuffer.wrap(bytes), 0, position + 5));
+			assertEquals(position, scanner.indexOf(ByteBuffer.wrap(bytes), position, position + 6));
+			assertEquals(-1, scanner.indexOf(ByteBuffer.wrap(bytes), position + 1, bytes.length));
+		}
+	}
+}
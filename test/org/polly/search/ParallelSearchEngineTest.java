@@ -0,0 +1,174 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+
+import org.polly.output.LineSink;
+import org.polly.test.TestCase;
+
+public class ParallelSearchEngineTest extends TestCase {
+	/**
+	 * More than one chunk of the engine, with lines of an odd length so the
+	 * chunk size falls inside a line.
+	 */
+	private static final int LINE_COUNT = 140000;
+	private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+	private static final int LINE_LENGTH = 70;
+
+	private static List<String> filter(List<String> lines, SearchQuery query, String prefix) {
+		final Matcher matcher = query.newMatcher();
+		final List<String> matches = new ArrayList<String>();
+		for (final String line : lines) {
+			if (query.matches(matcher, line)) {
+				matches.add(prefix + line);
+			}
+		}
+		return matches;
+	}
+
+	private static List<String> search(List<File> files, SearchQuery query) throws Exception {
+		final List<String> matches = new ArrayList<String>();
+		final ParallelSearchEngine engine = new ParallelSearchEngine(files, query, new LineSink() {
+			@Override
+			public void append(List<String> lines) {
+				matches.addAll(lines);
+			}
+
+			@Override
+			public void close() {
+				// Nothing to release
+			}
+		});
+		engine.run();
+		if (engine.getFailure() != null) {
+			throw engine.getFailure();
+		}
+		return matches;
+	}
+
+	private List<String> lines;
+	private File file;
+
+	private void check(String pattern, String options) throws Exception {
+		final SearchQuery query = SearchQuery.parse(pattern, options);
+		final List<String> expected = filter(this.lines, query, "");
+		final List<String> matches = search(Arrays.asList(this.file), query);
+		assertEquals(pattern + " " + options + " count", expected.size(), matches.size());
+		assertEquals(pattern + " " + options, expected, matches);
+	}
+
+	@Override
+	public void setUp() throws Exception {
+		this.lines = new ArrayList<String>();
+		final int boundaryLine = CHUNK_SIZE / LINE_LENGTH;
+		for (int i = 0; i < LINE_COUNT; i++) {
+			final boolean isMarked = i % 997 == 0 || Math.abs(i - boundaryLine) <= 1;
+			final String text = String.format("%08d %s worker-%d %s", i, isMarked ? "ERROR" : "DEBUG", i % 13,
+					isMarked ? "Needle found" : "nothing here");
+			final StringBuilder line = new StringBuilder(text);
+			while (line.length() < LINE_LENGTH - 1) {
+				line.append('.');
+			}
+			this.lines.add(line.toString());
+		}
+		this.file = this.newFile(this.lines);
+		assertTrue("the file spans more chunks", this.file.length() > CHUNK_SIZE);
+	}
+
+	public void testCompressedFilesInOrder() throws Exception {
+		// More matches than a compressed file may hold ahead of its turn
+		final List<File> files = new ArrayList<File>();
+		for (int i = 0; i < 3; i++) {
+			files.add(this.newFile(this.lines, ".log.gz"));
+		}
+		files.add(1, this.file);
+		final SearchQuery query = SearchQuery.parse("DEBUG", "");
+		final List<String> expected = new ArrayList<String>();
+		for (final File file : files) {
+			expected.addAll(filter(this.lines, query, file.getPath() + ":"));
+		}
+		final List<String> matches = search(files, query);
+		assertEquals("count", expected.size(), matches.size());
+		assertEquals(expected, matches);
+	}
+
+	public void testIgnoreCase() throws Exception {
+		this.check("needle FOUND", "-i");
+	}
+
+	public void testInvert() throws Exception {
+		this.check("DEBUG", "-v");
+	}
+
+	public void testLiteral() throws Exception {
+		this.check("ERROR", "");
+		this.check("Needle found", "-F");
+	}
+
+	public void testLinesAtTheChunkBoundary() throws Exception {
+		final List<String> matches = search(Arrays.asList(this.file), SearchQuery.parse("Needle", ""));
+		final int boundaryLine = CHUNK_SIZE / LINE_LENGTH;
+		for (int i = boundaryLine - 1; i <= boundaryLine + 1; i++) {
+			assertTrue("line " + i + " is found whole", matches.contains(this.lines.get(i)));
+		}
+	}
+
+	public void testMoreFilesArePrefixed() throws Exception {
+		final List<String> small = Arrays.asList("one ERROR", "two", "three ERROR");
+		final File other = this.newFile(small);
+		final SearchQuery query = SearchQuery.parse("ERROR", "");
+		final List<String> expected = filter(small, query, other.getPath() + ":");
+		expected.addAll(filter(this.lines, query, this.file.getPath() + ":"));
+		assertEquals(expected, search(Arrays.asList(other, this.file), query));
+	}
+
+	public void testRegularExpression() throws Exception {
+		this.check("worker-1[0-2] Needle", "");
+		this.check("^0011[0-9]{4} ERROR", "");
+		this.check("ERROR|nothing", "");
+	}
+
+	public void testTruncatedCompressedFileFails() throws Exception {
+		final File truncated = this.newFile(this.lines, ".log.gz");
+		final RandomAccessFile output = new RandomAccessFile(truncated, "rw");
+		try {
+			output.setLength(output.length() / 2);
+		} finally {
+			output.close();
+		}
+		try {
+			search(Arrays.asList(this.file, truncated), SearchQuery.parse("ERROR", ""));
+			fail("the search of a truncated file has to fail");
+		} catch (final IOException e) {
+			// Expected, the matches would be partial
+		}
+	}
+
+	public void testWholeWord() throws Exception {
+		this.check("Needle", "-w");
+		this.check("Need", "-w");
+	}
+}
@@ -0,0 +1,110 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.polly.test.TestCase;
+
+public class RequiredLiteralsTest extends TestCase {
+	/**
+	 * Checks the literals of the expression, and that a line it matches
+	 * contains all of them: a literal that is not really required would make
+	 * the search skip a matching line.
+	 */
+	private static void check(String regex, String matchingLine, String... expected) {
+		final List<String> literals = RequiredLiterals.of(regex);
+		assertEquals(regex, Arrays.asList(expected), literals);
+		assertTrue(regex + " does not match " + matchingLine, Pattern.compile(regex).matcher(matchingLine).find());
+		for (final String literal : literals) {
+			assertTrue(regex + " matches " + matchingLine + " without " + literal, matchingLine.contains(literal));
+		}
+	}
+
+	public void testAlternation() {
+		check("ERROR|WARN", "WARN disk");
+		check("a(b|c)d", "acd", "a", "d");
+		check("(?:foo|bar)baz", "barbaz", "baz");
+		check("(foo|bar)baz", "foobaz", "baz");
+	}
+
+	public void testAnchorsAndAnyCharacter() {
+		check("^start", "start here", "start");
+		check("end$", "the end", "end");
+		check("foo.bar", "foo-bar", "foo", "bar");
+		check("\\bword\\b", "a word", "word");
+	}
+
+	public void testClassesAndEscapes() {
+		check("took 1[0-9]{3} ms", "took 1234 ms", "took 1", " ms");
+		check("[abc]def", "cdef", "def");
+		check("[]a]bc", "]bc", "bc");
+		check("[a\\]]bc", "]bc", "bc");
+		check("a\\.b", "a.b", "a.b");
+		check("a\\(b", "a(b", "a(b");
+		check("\\d+ms", "42ms", "ms");
+		check("a\\sb", "a b", "a", "b");
+		check("\\x41BC", "ABC", "BC");
+		check("\\u0041BC", "ABC", "BC");
+		check("\\p{L}abc", "xabc", "abc");
+	}
+
+	public void testInlineFlagsAndLookArounds() {
+		// (?i) makes the literals match in any case, none can be required
+		check("(?i)error", "ERROR");
+		check("x(?i)y", "xY");
+		check("(?=a)abc", "abc");
+		check("abc(?!d)", "abce");
+	}
+
+	public void testInvalidExpressionsGiveNothing() {
+		assertEquals(Collections.<String> emptyList(), RequiredLiterals.of("ab\\"));
+		assertEquals(Collections.<String> emptyList(), RequiredLiterals.of("(ab"));
+		assertEquals(Collections.<String> emptyList(), RequiredLiterals.of("a)b"));
+	}
+
+	public void testLiteral() {
+		check("ERROR", "an ERROR here", "ERROR");
+		check("connection 42", "lost connection 42", "connection 42");
+	}
+
+	public void testQuantifiers() {
+		check("ab?c", "ac", "a", "c");
+		check("abc*", "ab", "ab");
+		check("abc?", "ab", "ab");
+		check("ab+c", "abbc", "ab", "c");
+		check("a{2}b", "aab", "b");
+		check("ab{0}c", "ac", "a", "c");
+		check("ab*?c", "ac", "a", "c");
+	}
+
+	public void testQueryOptions() {
+		assertEquals(Arrays.asList("a.b"), SearchQuery.parse("a.b", "-F").getRequiredLiterals());
+		assertEquals(Collections.<String> emptyList(), SearchQuery.parse("ERROR", "-v").getRequiredLiterals());
+		assertEquals(Arrays.asList("error"), SearchQuery.parse("error", "-i").getRequiredLiterals());
+	}
+
+	public void testQuotedText() {
+		check("\\Qa.b\\E?c", "a.c", "a.", "c");
+		check("x\\Qy.z", "xy.z", "xy.z");
+	}
+}
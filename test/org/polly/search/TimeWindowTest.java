@@ -0,0 +1,229 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.polly.structured.LayoutLineParser;
+import org.polly.test.TestCase;
+
+public class TimeWindowTest extends TestCase {
+	private static final String FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+	private static final String DAY = "2017-03-01 ";
+
+	/**
+	 * Returns the lines between the two times looking at every line, the
+	 * lines without a timestamp taking the time of the line before.
+	 */
+	private static List<String> filterSlowly(List<String> lines, String from, String to) {
+		final LayoutLineParser parser = new LayoutLineParser("timestamp message", FORMAT);
+		final long fromTime = from.isEmpty() ? Long.MIN_VALUE : parser.parseTimestamp(DAY + from);
+		final long toTime = to.isEmpty() ? Long.MAX_VALUE : parser.parseTimestamp(DAY + to);
+		final List<String> window = new ArrayList<String>();
+		long timestamp = Long.MIN_VALUE;
+		for (final String line : lines) {
+			final long lineTimestamp = line.length() < FORMAT.length() ? Long.MIN_VALUE
+					: parser.parseTimestamp(line.substring(0, FORMAT.length()));
+			if (lineTimestamp != Long.MIN_VALUE) {
+				timestamp = lineTimestamp;
+			}
+			if (timestamp != Long.MIN_VALUE && timestamp >= fromTime && timestamp <= toTime) {
+				window.add(line);
+			}
+		}
+		return window;
+	}
+
+	/**
+	 * Returns a line every 250 ms from 10:00:00, two lines share each time
+	 * after the first second.
+	 */
+	private static List<String> newLines(int count) {
+		final List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < count; i++) {
+			final long millis = i < 4 ? i * 250L : 1000 + (i - 4) / 2 * 250L;
+			lines.add(line(millis, "message " + i));
+		}
+		return lines;
+	}
+
+	private static String line(long millis, String message) {
+		return String.format("%s10:%02d:%02d.%03d INFO main org.polly.A %s", DAY, millis / 60000, millis / 1000 % 60,
+				millis % 1000, message);
+	}
+
+	private static String trace(int i) {
+		return "\tat org.polly.Some.stack(Trace.java:" + i + ") padding padding padding";
+	}
+
+	private void check(List<String> lines, String from, String to) throws IOException {
+		final List<String> actual = this.search(lines, from.isEmpty() ? "" : DAY + from, to.isEmpty() ? "" : DAY + to);
+		assertEquals(from + " - " + to, filterSlowly(lines, from, to), actual);
+	}
+
+	/**
+	 * Returns the lines of the range of the window in a file of the lines,
+	 * or null when the window has no range.
+	 */
+	private List<String> search(List<String> lines, String from, String to) throws IOException {
+		final File file = this.newFile(lines);
+		final RandomAccessFile input = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = input.getChannel();
+			final long[] range = TimeWindow.parse(from, to, FORMAT).getRange(channel, channel.size());
+			if (range == null) {
+				return null;
+			}
+			assertTrue("the range is in order", range[0] <= range[1]);
+			final byte[] bytes = new byte[(int) (range[1] - range[0])];
+			input.seek(range[0]);
+			input.readFully(bytes);
+			final String text = new String(bytes, "UTF-8");
+			if (text.isEmpty()) {
+				return Collections.emptyList();
+			}
+			assertTrue("the range ends with a whole line", text.endsWith("\n"));
+			return Arrays.asList(text.substring(0, text.length() - 1).split("\n", -1));
+		} finally {
+			input.close();
+		}
+	}
+
+	public void testBoundsIncluded() throws IOException {
+		final List<String> lines = newLines(2000);
+		this.check(lines, "10:00:00.000", "10:00:00.000");
+		this.check(lines, "10:00:01.000", "10:00:01.250");
+		this.check(lines, "10:00:30.000", "10:01:00.000");
+		this.check(lines, "10:00:30.001", "10:01:00.249");
+		this.check(lines, "10:04:10.750", "10:04:10.750");
+	}
+
+	public void testGapWithoutTimestamps() throws IOException {
+		// The gap is longer than a probe reads, the probes in the gap find
+		// no time at all
+		final List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			lines.add(line(i * 100L, "before " + i));
+		}
+		for (int i = 0; i < 150000; i++) {
+			lines.add(trace(i));
+		}
+		for (int i = 100; i < 200; i++) {
+			lines.add(line(i * 100L, "after " + i));
+		}
+
+		final String[][] windows = { { "10:00:05.000", "10:00:15.000" }, { "10:00:02.000", "10:00:04.000" },
+				{ "10:00:12.000", "10:00:15.000" }, { "10:00:09.900", "10:00:10.000" } };
+		for (final String[] window : windows) {
+			final List<String> expected = filterSlowly(lines, window[0], window[1]);
+			final List<String> actual = this.search(lines, DAY + window[0], DAY + window[1]);
+			assertTrue(window[0] + " - " + window[1] + " keeps every line of the window",
+					Collections.indexOfSubList(actual, expected) >= 0);
+		}
+	}
+
+	public void testLineFilter() {
+		final List<String> lines = new ArrayList<String>(newLines(40));
+		lines.add(3, trace(1));
+		lines.add(20, trace(2));
+		final TimeWindow.LineFilter filter = TimeWindow.parse(DAY + "10:00:01.000", DAY + "10:00:03.000", FORMAT)
+				.newLineFilter();
+		final List<String> accepted = new ArrayList<String>();
+		for (final String line : lines) {
+			if (filter.accept(line)) {
+				accepted.add(line);
+			}
+			if (filter.isPastEnd()) {
+				break;
+			}
+		}
+		assertEquals(filterSlowly(lines, "10:00:01.000", "10:00:03.000"), accepted);
+		assertTrue("the lines after the window are not read", filter.isPastEnd());
+	}
+
+	public void testLongLines() throws IOException {
+		// Lines longer than the buffer of the probes
+		final StringBuilder padding = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			padding.append("padding ");
+		}
+		final List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			lines.add(line(i * 100L, i % 3 == 0 ? padding.toString() : "short " + i));
+			if (i % 7 == 0) {
+				lines.add(trace(i) + padding);
+			}
+		}
+		this.check(lines, "10:00:01.000", "10:00:02.000");
+		this.check(lines, "10:00:02.100", "10:00:07.000");
+		this.check(lines, "10:00:09.900", "");
+	}
+
+	public void testNoTimestamps() throws IOException {
+		final List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 100; i++) {
+			lines.add(trace(i));
+		}
+		assertNull("the whole file is searched", this.search(lines, DAY + "10:00:00.000", DAY + "10:00:01.000"));
+	}
+
+	public void testOpenEnds() throws IOException {
+		final List<String> lines = newLines(2000);
+		this.check(lines, "", "10:00:10.000");
+		this.check(lines, "10:03:00.000", "");
+		assertEquals(lines, this.search(lines, "", ""));
+	}
+
+	public void testOutsideFile() throws IOException {
+		final List<String> lines = newLines(2000);
+		assertEquals("before", Collections.<String> emptyList(),
+				this.search(lines, DAY + "09:00:00.000", DAY + "09:59:59.999"));
+		assertEquals("after", Collections.<String> emptyList(),
+				this.search(lines, DAY + "10:04:10.751", DAY + "11:00:00.000"));
+		this.check(lines, "09:00:00.000", "10:00:00.500");
+		this.check(lines, "10:04:00.000", "11:00:00.000");
+	}
+
+	public void testTimeOfDay() throws IOException {
+		final List<String> lines = newLines(2000);
+		assertEquals(filterSlowly(lines, "10:00:02.000", "10:00:04.500"),
+				this.search(lines, "10:00:02", "10:00:04.500"));
+		assertEquals(filterSlowly(lines, "10:02:00.000", ""), this.search(lines, "10:02", ""));
+	}
+
+	public void testTrailingLinesWithoutTimestamp() throws IOException {
+		final List<String> lines = newLines(200);
+		lines.add(100, trace(1));
+		lines.add(101, trace(2));
+		for (int i = 0; i < 5; i++) {
+			lines.add(trace(10 + i));
+		}
+		this.check(lines, "10:00:20.000", "10:00:24.250");
+		this.check(lines, "10:00:24.250", "10:00:30.000");
+		this.check(lines, "10:00:49.000", "");
+		this.check(lines, "10:00:49.250", "10:00:50.000");
+	}
+}
@@ -0,0 +1,138 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.structured;
+
+import java.util.Arrays;
+
+import org.polly.output.MemoryLineStore;
+import org.polly.test.TestCase;
+
+public class LogTableTest extends TestCase {
+	private static final String FORMAT = "yyyy-MM-dd HH:mm:ss.SSS";
+
+	private static int[] allRows(LogTable table) {
+		final int[] rows = new int[table.getRowCount()];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = i;
+		}
+		return rows;
+	}
+
+	private static String messages(LogTable table, int[] rows) {
+		final StringBuilder text = new StringBuilder();
+		for (final int row : rows) {
+			if (text.length() > 0) {
+				text.append(' ');
+			}
+			text.append(table.getMessage(row));
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Returns a table with a row per level and message, one second apart.
+	 */
+	private static LogTable newTable(String... levelsAndMessages) {
+		final LogTable table = new LogTable();
+		for (int i = 0; i < levelsAndMessages.length; i += 2) {
+			table.append(i / 2, 1000L * i, levelsAndMessages[i], "main", "org.polly." + levelsAndMessages[i],
+					levelsAndMessages[i + 1]);
+		}
+		return table;
+	}
+
+	public void testFilter() {
+		final LogTable table = newTable("INFO", "a1", "WARN", "b2", "INFO", "c3", "ERROR", "d4", "INFO", "e5");
+		assertEquals("bounds included", "b2 c3 d4", messages(table, table.filter(2000, 6000, null, null, "")));
+		assertEquals("open ends", "a1 b2 c3 d4 e5",
+				messages(table, table.filter(Long.MIN_VALUE, Long.MAX_VALUE, null, null, "")));
+		assertEquals("text", "c3", messages(table, table.filter(Long.MIN_VALUE, Long.MAX_VALUE, null, null, "3")));
+
+		final boolean[] levels = new boolean[table.getLevels().size()];
+		levels[table.getLevels().getId("INFO")] = true;
+		assertEquals("level", "c3 e5", messages(table, table.filter(3000, Long.MAX_VALUE, levels, null, "")));
+
+		final boolean[] loggers = new boolean[table.getLoggers().size()];
+		loggers[table.getLoggers().getId("org.polly.WARN")] = true;
+		assertEquals("logger", "b2", messages(table, table.filter(Long.MIN_VALUE, Long.MAX_VALUE, null, loggers, "")));
+	}
+
+	public void testFilterUnordered() {
+		final LogTable table = new LogTable();
+		table.append(0, 3000, "INFO", "main", "x", "late");
+		table.append(1, 1000, "INFO", "main", "x", "early");
+		table.append(2, 2000, "INFO", "main", "x", "middle");
+		table.append(3, 5000, "INFO", "main", "x", "last");
+		assertEquals("late early middle", messages(table, table.filter(1000, 3000, null, null, "")));
+		assertEquals("early middle", messages(table, table.filter(Long.MIN_VALUE, 2000, null, null, "")));
+	}
+
+	public void testLoad() {
+		final MemoryLineStore store = new MemoryLineStore();
+		store.append(Arrays.asList("2017-03-01 10:00:00.000 INFO main org.polly.A started",
+				"2017-03-01 10:00:01.500 ERROR [worker-1] org.polly.B failed",
+				"java.lang.IllegalStateException: closed", "\tat org.polly.B.run(B.java:12)",
+				"2017-03-01 10:00:02.000 INFO main org.polly.A done"));
+		final LogTable table = LogTable.load(store, new LayoutLineParser("timestamp level thread logger message",
+				FORMAT));
+
+		assertEquals(5, table.getRowCount());
+		assertEquals("worker-1", table.getThread(1));
+		assertEquals("org.polly.B", table.getLogger(1));
+		assertEquals("failed", table.getMessage(1));
+		assertEquals(1500, table.getTimestamp(1) - table.getTimestamp(0));
+		assertEquals("the stack trace keeps the time of its line", table.getTimestamp(1), table.getTimestamp(3));
+		assertEquals("", table.getLevel(2));
+		assertEquals("\tat org.polly.B.run(B.java:12)", table.getMessage(3));
+		assertEquals(4, table.getLineNumber(4));
+
+		final boolean[] levels = new boolean[table.getLevels().size()];
+		levels[table.getLevels().getId("ERROR")] = true;
+		assertEquals("failed", messages(table, table.filter(Long.MIN_VALUE, Long.MAX_VALUE, levels, null, "")));
+	}
+
+	public void testParserRejectsSecondsOutOfRange() {
+		final LayoutLineParser parser = new LayoutLineParser("timestamp message", "yyyy-MM-dd HH:mm:ss");
+		final long start = parser.parseTimestamp("2017-03-01 10:00:05");
+		assertEquals(9000, parser.parseTimestamp("2017-03-01 10:00:14") - start);
+		assertEquals(Long.MIN_VALUE, parser.parseTimestamp("2017-03-01 10:00:99"));
+		assertEquals(54000, parser.parseTimestamp("2017-03-01 10:00:59") - start);
+	}
+
+	public void testSort() {
+		final LogTable table = newTable("WARN", "b", "INFO", "a", "ERROR", "b", "INFO", "c", "WARN", "a");
+		final int[] rows = allRows(table);
+
+		table.sort(rows, LogTable.Column.LEVEL, true);
+		assertEquals("b a c b a", messages(table, rows));
+		assertEquals("[2, 1, 3, 0, 4]", Arrays.toString(rows));
+
+		// Stable, the rows of the same message stay sorted by level
+		table.sort(rows, LogTable.Column.MESSAGE, true);
+		assertEquals("[1, 4, 2, 0, 3]", Arrays.toString(rows));
+
+		table.sort(rows, LogTable.Column.MESSAGE, false);
+		assertEquals("[3, 2, 0, 1, 4]", Arrays.toString(rows));
+
+		table.sort(rows, LogTable.Column.TIMESTAMP, false);
+		assertEquals("[4, 3, 2, 1, 0]", Arrays.toString(rows));
+		table.sort(rows, LogTable.Column.LINE, true);
+		assertEquals("[0, 1, 2, 3, 4]", Arrays.toString(rows));
+	}
+}
@@ -0,0 +1,124 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A group of tests. Every public method without arguments whose name starts
+ * with test is run by the {@link TestRunner} on a new instance, between
+ * {@link #setUp()} and {@link #tearDown()}. A test fails by throwing, the
+ * assertions throw an {@link AssertionError} describing what was expected.
+ */
+public abstract class TestCase {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	protected static void assertEquals(long expected, long actual) {
+		if (expected != actual) {
+			fail("expected " + expected + " but was " + actual);
+		}
+	}
+
+	protected static void assertEquals(Object expected, Object actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			fail("expected <" + expected + "> but was <" + actual + ">");
+		}
+	}
+
+	protected static void assertEquals(String message, Object expected, Object actual) {
+		if (expected == null ? actual != null : !expected.equals(actual)) {
+			fail(message + ": expected <" + expected + "> but was <" + actual + ">");
+		}
+	}
+
+	protected static void assertFalse(String message, boolean condition) {
+		if (condition) {
+			fail(message);
+		}
+	}
+
+	protected static void assertNull(String message, Object object) {
+		if (object != null) {
+			fail(message + ": expected null but was <" + object + ">");
+		}
+	}
+
+	protected static void assertTrue(String message, boolean condition) {
+		if (!condition) {
+			fail(message);
+		}
+	}
+
+	protected static void fail(String message) {
+		throw new AssertionError(message);
+	}
+
+	private final List<File> temporaryFiles = new ArrayList<File>();
+
+	/**
+	 * Returns a file holding the lines, each one ended by a new line. The
+	 * file is deleted after the test.
+	 */
+	protected File newFile(List<String> lines) throws IOException {
+		return this.newFile(lines, ".log");
+	}
+
+	/**
+	 * Returns a file with the given suffix holding the lines, compressed by
+	 * gzip when the suffix is .gz. The file is deleted after the test.
+	 */
+	protected File newFile(List<String> lines, String suffix) throws IOException {
+		final File file = File.createTempFile("grepui-test-", suffix);
+		this.temporaryFiles.add(file);
+		final OutputStream output = suffix.endsWith(".gz") ? new GZIPOutputStream(new FileOutputStream(file))
+				: new FileOutputStream(file);
+		try {
+			final StringBuilder text = new StringBuilder();
+			for (final String line : lines) {
+				text.append(line).append('\n');
+				if (text.length() >= 64 * 1024) {
+					output.write(text.toString().getBytes(UTF8));
+					text.setLength(0);
+				}
+			}
+			output.write(text.toString().getBytes(UTF8));
+		} finally {
+			output.close();
+		}
+		return file;
+	}
+
+	public void setUp() throws Exception {
+		// Nothing to prepare by default
+	}
+
+	public void tearDown() throws Exception {
+		for (final File file : this.temporaryFiles) {
+			file.delete();
+		}
+		this.temporaryFiles.clear();
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.polly.search.AhoCorasickTest;
+import org.polly.search.LiteralScannerTest;
+import org.polly.search.ParallelSearchEngineTest;
+import org.polly.search.RequiredLiteralsTest;
+import org.polly.search.TimeWindowTest;
+import org.polly.structured.LogTableTest;
+import org.polly.ui.MatchListTest;
+
+/**
+ * Runs every test and prints the failures, the exit status is not zero when
+ * a test failed. Configured by system properties, see the test target of the
+ * build file:
+ * <ul>
+ * <li>test.filter: runs only the tests whose class or method name contains
+ * it</li>
+ * </ul>
+ */
+public class TestRunner {
+	private static List<Class<? extends TestCase>> getTestCases() {
+		final List<Class<? extends TestCase>> testCases = new ArrayList<Class<? extends TestCase>>();
+		testCases.add(AhoCorasickTest.class);
+		testCases.add(LiteralScannerTest.class);
+		testCases.add(LogTableTest.class);
+		testCases.add(MatchListTest.class);
+		testCases.add(ParallelSearchEngineTest.class);
+		testCases.add(RequiredLiteralsTest.class);
+		testCases.add(TimeWindowTest.class);
+		return testCases;
+	}
+
+	public static void main(String[] args) throws Exception {
+		final String filter = System.getProperty("test.filter", "");
+
+		final TestRunner runner = new TestRunner();
+		for (final Class<? extends TestCase> testCase : getTestCases()) {
+			final Method[] methods = testCase.getMethods();
+			// The order of getMethods() is not specified
+			Arrays.sort(methods, new Comparator<Method>() {
+				@Override
+				public int compare(Method a, Method b) {
+					return a.getName().compareTo(b.getName());
+				}
+			});
+			for (final Method method : methods) {
+				final String name = testCase.getSimpleName() + "." + method.getName();
+				if (method.getName().startsWith("test") && method.getParameterTypes().length == 0
+						&& !Modifier.isStatic(method.getModifiers()) && name.contains(filter)) {
+					runner.run(testCase, method, name);
+				}
+			}
+		}
+
+		System.out.println(String.format("%d tests, %d failed", runner.runCount, runner.failures.size()));
+		for (final String failure : runner.failures) {
+			System.out.println("FAILED " + failure);
+		}
+		if (!runner.failures.isEmpty()) {
+			System.exit(1);
+		}
+	}
+
+	private final List<String> failures = new ArrayList<String>();
+	private int runCount = 0;
+
+	private void run(Class<? extends TestCase> testCase, Method method, String name) throws Exception {
+		this.runCount++;
+		final long start = System.nanoTime();
+		final TestCase test = testCase.getDeclaredConstructor().newInstance();
+		Throwable failure = null;
+		try {
+			test.setUp();
+			try {
+				method.invoke(test);
+			} finally {
+				test.tearDown();
+			}
+		} catch (final InvocationTargetException e) {
+			failure = e.getCause();
+		} catch (final Exception e) {
+			failure = e;
+		}
+
+		final long millis = (System.nanoTime() - start) / 1000000;
+		if (failure == null) {
+			System.out.println(String.format("%-60s %-6s %6d ms", name, "ok", millis));
+			return;
+		}
+
+		System.out.println(String.format("%-60s %-6s %6d ms", name, "FAILED", millis));
+		failure.printStackTrace(System.out);
+		this.failures.add(name + ": " + failure);
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * This file belonging to GrepUi an open source tool to search and trace
+ * information contained in your logs.
+ * Copyright (C) 2017  Alessandro Pollace
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.polly.ui;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.polly.test.TestCase;
+
+public class MatchListTest extends TestCase {
+	private static List<int[]> toList(MatchList matches) {
+		final List<int[]> list = new ArrayList<int[]>();
+		for (int i = 0; i < matches.size(); i++) {
+			list.add(new int[] { matches.getStart(i), matches.getEnd(i) });
+		}
+		return list;
+	}
+
+	private static String toString(List<int[]> matches) {
+		final StringBuilder text = new StringBuilder();
+		for (final int[] match : matches) {
+			text.append(match[0]).append('-').append(match[1]).append(' ');
+		}
+		return text.toString().trim();
+	}
+
+	public void testAddKeepsTheStartsSorted() {
+		final MatchList matches = new MatchList();
+		final int[] starts = { 5, 1, 9, 3, 3, 200, 0 };
+		for (final int start : starts) {
+			matches.add(start, start + 2);
+		}
+		assertEquals("0-2 1-3 3-5 3-5 5-7 9-11 200-202", toString(toList(matches)));
+	}
+
+	public void testGrowsPastTheInitialCapacity() {
+		final MatchList matches = new MatchList();
+		for (int i = 0; i < 1000; i++) {
+			matches.add(i * 10, i * 10 + 5);
+		}
+		assertEquals(1000, matches.size());
+		assertEquals(9990, matches.getStart(999));
+		assertEquals(500, matches.lowerBound(4995));
+	}
+
+	public void testLowerBound() {
+		final MatchList matches = new MatchList();
+		matches.add(10, 12);
+		matches.add(20, 22);
+		matches.add(20, 25);
+		matches.add(30, 31);
+		assertEquals(0, matches.lowerBound(-5));
+		assertEquals(0, matches.lowerBound(10));
+		assertEquals(1, matches.lowerBound(11));
+		assertEquals(1, matches.lowerBound(20));
+		assertEquals(3, matches.lowerBound(21));
+		assertEquals(4, matches.lowerBound(31));
+	}
+
+	public void testRemoveRangeAgainstOneByOneRemoval() {
+		final Random random = new Random(7);
+		for (int round = 0; round < 2000; round++) {
+			final MatchList matches = new MatchList();
+			for (int i = random.nextInt(100); i > 0; i--) {
+				final int start = random.nextInt(300);
+				matches.add(start, start + 1 + random.nextInt(12));
+			}
+			final List<int[]> expected = toList(matches);
+
+			final int fromIndex = random.nextInt(matches.size() + 1);
+			final int toIndex = fromIndex + random.nextInt(matches.size() - fromIndex + 1);
+			final int minEnd = random.nextInt(320) - 10;
+			final int maxEnd = minEnd + random.nextInt(40);
+			final Iterator<int[]> iterator = expected.subList(fromIndex, toIndex).iterator();
+			while (iterator.hasNext()) {
+				final int end = iterator.next()[1];
+				if (end > minEnd && end <= maxEnd) {
+					iterator.remove();
+				}
+			}
+
+			matches.removeRange(fromIndex, toIndex, minEnd, maxEnd);
+			assertEquals(toString(expected), toString(toList(matches)));
+		}
+	}
+
+	public void testRemoveRangeOfEverything() {
+		final MatchList matches = new MatchList();
+		for (int i = 0; i < 100; i++) {
+			matches.add(i, i + 1);
+		}
+		matches.removeRange(0, matches.size(), Integer.MIN_VALUE, Integer.MAX_VALUE);
+		assertEquals(0, matches.size());
+
+		// Still usable afterwards
+		matches.add(3, 4);
+		assertEquals("3-4", toString(toList(matches)));
+	}
+
+	public void testShift() {
+		final MatchList matches = new MatchList();
+		matches.add(1, 2);
+		matches.add(5, 8);
+		matches.add(9, 10);
+		matches.shift(1, 100);
+		assertEquals("1-2 105-108 109-110", toString(toList(matches)));
+		matches.shift(1, -3);
+		assertEquals("1-2 102-105 106-107", toString(toList(matches)));
+	}
+}